@@ -0,0 +1,95 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import com.alibaba.datax.common.element.Column;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.plugin.RecordSender;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 把record交给Blackhole的RecordSender, 代替writer通道
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+final class BlackholeRecordSender implements RecordSender {
+    private final Blackhole blackhole;
+    private long sent = 0;
+
+    BlackholeRecordSender(Blackhole blackhole) {
+        this.blackhole = blackhole;
+    }
+
+    long getSent() {
+        return sent;
+    }
+
+    @Override
+    public Record createRecord() {
+        return new ListRecord();
+    }
+
+    @Override
+    public void sendToWriter(Record record) {
+        sent++;
+        blackhole.consume(record);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void terminate() {
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    private static final class ListRecord implements Record {
+        private final List<Column> columns = new ArrayList<>();
+        private Map<String, String> meta;
+
+        @Override
+        public void addColumn(Column column) {
+            columns.add(column);
+        }
+
+        @Override
+        public void setColumn(int i, Column column) {
+            columns.set(i, column);
+        }
+
+        @Override
+        public Column getColumn(int i) {
+            return columns.get(i);
+        }
+
+        @Override
+        public int getColumnNumber() {
+            return columns.size();
+        }
+
+        @Override
+        public int getByteSize() {
+            return 0;
+        }
+
+        @Override
+        public int getMemorySize() {
+            return 0;
+        }
+
+        public void setMeta(Map<String, String> meta) {
+            this.meta = meta;
+        }
+
+        public Map<String, String> getMeta() {
+            return meta;
+        }
+    }
+}
@@ -0,0 +1,150 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import com.alibaba.fastjson.JSON;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.xcontent.XContentBuilder;
+import org.elasticsearch.xcontent.XContentFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Random;
+
+/**
+ * 合成的文档和对应的column配置.
+ * <p>
+ * 文档结构: 第一层width个字段(字符串/整数/小数/日期轮流), 一条深度为depth的对象链(每层width/4个字段),
+ * 以及两个长度为fanout的对象数组items和tags, 展开后每条文档产生fanout*fanout行.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+final class DocumentFixture {
+    private final int width;
+    private final int depth;
+    private final int fanout;
+    private final Random random = new Random(42);
+
+    DocumentFixture(int width, int depth, int fanout) {
+        this.width = width;
+        this.depth = depth;
+        this.fanout = fanout;
+    }
+
+    /**
+     * column配置, 所有字段都读取, 最终列名互不相同
+     */
+    Map<String, Object> table(String filter) {
+        List<Object> column = new ArrayList<>(leaves("", width));
+        List<Object> level = column;
+        for (int d = 1; d <= depth; d++) {
+            String prefix = "o" + d + "_";
+            List<Object> child = new ArrayList<>(leaves(prefix, Math.max(1, width / 4)));
+            level.add(field("o" + d, child));
+            level = child;
+        }
+        if (fanout > 0) {
+            column.add(field("items", leaves("items_", 3)));
+            column.add(field("tags", leaves("tags_", 2)));
+        }
+        Map<String, Object> table = new HashMap<>();
+        table.put("name", "bench");
+        table.put("column", column);
+        if (filter != null) {
+            table.put("filter", filter);
+        }
+        return table;
+    }
+
+    /**
+     * Task.init需要的最小配置
+     */
+    String taskConf(String filter) {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put("endpoints", "127.0.0.1:9200");
+        conf.put("index", "bench");
+        conf.put("search", Collections.singletonMap("query", Collections.singletonMap("match_all", Collections.emptyMap())));
+        conf.put("table", table(filter));
+        return JSON.toJSONString(conf);
+    }
+
+    BytesReference source() throws IOException {
+        XContentBuilder builder = XContentFactory.jsonBuilder().startObject();
+        values(builder, "", width);
+        for (int d = 1; d <= depth; d++) {
+            builder.startObject("o" + d);
+            values(builder, "o" + d + "_", Math.max(1, width / 4));
+        }
+        for (int d = 1; d <= depth; d++) {
+            builder.endObject();
+        }
+        if (fanout > 0) {
+            builder.startArray("items");
+            for (int i = 0; i < fanout; i++) {
+                builder.startObject();
+                values(builder, "items_", 3);
+                builder.endObject();
+            }
+            builder.endArray();
+            builder.startArray("tags");
+            for (int i = 0; i < fanout; i++) {
+                builder.startObject();
+                values(builder, "tags_", 2);
+                builder.endObject();
+            }
+            builder.endArray();
+        }
+        // 未配置的字段, 解析时需要跳过
+        builder.startObject("ignored").field("text", "x").array("list", 1, 2, 3).endObject();
+        return BytesReference.bytes(builder.endObject());
+    }
+
+    SearchHit[] hits(int count) throws IOException {
+        SearchHit[] hits = new SearchHit[count];
+        for (int i = 0; i < count; i++) {
+            SearchHit hit = new SearchHit(i, String.valueOf(i), new Text("_doc"), Collections.emptyMap(), Collections.emptyMap());
+            hit.sourceRef(source());
+            hits[i] = hit;
+        }
+        return hits;
+    }
+
+    private static List<Object> leaves(String prefix, int count) {
+        List<Object> leaves = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            leaves.add(Collections.singletonMap("name", prefix + "f" + i));
+        }
+        return leaves;
+    }
+
+    private static Map<String, Object> field(String name, List<Object> child) {
+        Map<String, Object> field = new HashMap<>();
+        field.put("name", name);
+        field.put("child", child);
+        return field;
+    }
+
+    private void values(XContentBuilder builder, String prefix, int count) throws IOException {
+        for (int i = 0; i < count; i++) {
+            String name = prefix + "f" + i;
+            switch (i % 4) {
+                case 0:
+                    builder.field(name, "value-" + random.nextInt(1000));
+                    break;
+                case 1:
+                    builder.field(name, random.nextInt(100));
+                    break;
+                case 2:
+                    builder.field(name, random.nextDouble() * 1000);
+                    break;
+                default:
+                    builder.field(name, "2026-10-17T08:00:00Z");
+            }
+        }
+    }
+}
@@ -0,0 +1,127 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import com.alibaba.datax.common.util.Configuration;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.search.SearchHit;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OperationsPerInvocation;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单条文档从_source到Record的各个阶段:
+ * <ul>
+ * <li>decode: _source解析成SourceFrame</li>
+ * <li>flatten: Task.getPathSource展开对象数组</li>
+ * <li>filter: deleteFilterKey和filter表达式</li>
+ * <li>convert: Task.buildRecord生成Column</li>
+ * <li>transport: Task.transportRecords完整流程, 按文档计</li>
+ * </ul>
+ * 分数均为每秒处理的文档数; 加上-prof gc可以看到每个阶段每条文档的分配量(gc.alloc.rate.norm).
+ * <pre>
+ * mvn -Pjmh test-compile exec:exec -Djmh.args="HotPathBenchmark -prof gc"
+ * </pre>
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@State(Scope.Thread)
+@Fork(1)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+public class HotPathBenchmark {
+    private static final int HITS = 100;
+
+    @Param({"10", "50", "200"})
+    private int width;
+
+    @Param({"0", "3"})
+    private int depth;
+
+    @Param({"0", "10", "30"})
+    private int fanout;
+
+    @Param({"false", "true"})
+    private boolean filter;
+
+    private EsReader.Task task;
+    private ColumnPlan plan;
+    private SourceDecoder decoder;
+    private BytesReference source;
+    private SourceFrame frame;
+    private List<Object[]> rows;
+    private SearchHit[] hits;
+
+    @Setup(Level.Trial)
+    public void setup() throws IOException {
+        DocumentFixture fixture = new DocumentFixture(width, depth, fanout);
+        String expression = filter ? "f1 != null && f1 >= 10" : null;
+        Configuration conf = Configuration.from(fixture.taskConf(expression));
+        task = new EsReader.Task();
+        task.setPluginJobConf(conf);
+        task.init();
+
+        plan = ColumnPlan.compile(Key.getTable(conf));
+        decoder = new SourceDecoder(plan);
+        source = fixture.source();
+        frame = decoder.decode(source);
+        rows = flatten(frame);
+        hits = fixture.hits(HITS);
+    }
+
+    private List<Object[]> flatten(SourceFrame sourceFrame) {
+        final List<Object[]> result = new ArrayList<>();
+        task.getPathSource(sourceFrame, row -> result.add(row.clone()));
+        return result;
+    }
+
+    @Benchmark
+    public SourceFrame decode() throws IOException {
+        return decoder.decode(source);
+    }
+
+    @Benchmark
+    public void flatten(final Blackhole blackhole) {
+        task.getPathSource(frame, blackhole::consume);
+    }
+
+    @Benchmark
+    public void filter(Blackhole blackhole) {
+        for (Object[] row : rows) {
+            blackhole.consume(task.filter(row));
+        }
+    }
+
+    @Benchmark
+    public void convert(Blackhole blackhole) {
+        BlackholeRecordSender sender = new BlackholeRecordSender(blackhole);
+        for (Object[] row : rows) {
+            blackhole.consume(task.buildRecord(sender, row));
+        }
+    }
+
+    @Benchmark
+    @OperationsPerInvocation(HITS)
+    public long transport(Blackhole blackhole) {
+        BlackholeRecordSender sender = new BlackholeRecordSender(blackhole);
+        task.transportRecords(sender, hits);
+        return sender.getSent();
+    }
+}
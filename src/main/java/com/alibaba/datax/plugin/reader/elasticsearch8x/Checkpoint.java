@@ -0,0 +1,197 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.math.BigInteger;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+
+/**
+ * 一个split的翻页进度, 保存在本地目录中, 任务重跑时从上次保存的search_after继续.
+ * <p>
+ * 文件名为"job key-split id.json", job key由连接地址、索引、search和table计算, 配置变化后旧的进度不会被误用;
+ * 写入时先写临时文件再rename, 进程在任何时刻退出都不会留下写了一半的文件.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class Checkpoint {
+    private static final Logger log = LoggerFactory.getLogger(Checkpoint.class);
+
+    private final File file;
+    private String queryHash;
+    private String pitId;
+    private Object[] sortValues;
+    private long docs;
+    private long pages;
+    private boolean finished;
+
+    private Checkpoint(File file) {
+        this.file = file;
+    }
+
+    public static Checkpoint of(String dir, String jobKey, String splitId, String queryHash) {
+        Checkpoint checkpoint = new Checkpoint(new File(dir, jobKey + "-" + splitId + ".json"));
+        checkpoint.queryHash = queryHash;
+        return checkpoint;
+    }
+
+    /**
+     * 读取已保存的进度; 没有文件、文件损坏或者查询条件不一致时返回false, 从头开始读
+     */
+    public boolean load() {
+        if (!file.isFile()) {
+            return false;
+        }
+        JSONObject json;
+        try {
+            json = JSON.parseObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        } catch (Exception e) {
+            log.warn("read checkpoint [{}] is error: {}", file, e.getMessage());
+            return false;
+        }
+        if (json == null || !queryHash.equals(json.getString("queryHash"))) {
+            log.warn("checkpoint [{}] does not match current query, ignore it", file);
+            return false;
+        }
+        this.pitId = json.getString("pitId");
+        this.sortValues = decodeSortValues(json.getJSONArray("sortValues"), json.getJSONArray("sortTypes"));
+        this.docs = json.getLongValue("docs");
+        this.pages = json.getLongValue("pages");
+        this.finished = json.getBooleanValue("finished");
+        return true;
+    }
+
+    public void save(String pitId, Object[] sortValues, long docs, long pages, boolean finished) throws IOException {
+        this.pitId = pitId;
+        this.sortValues = sortValues;
+        this.docs = docs;
+        this.pages = pages;
+        this.finished = finished;
+        JSONObject json = new JSONObject(true);
+        json.put("queryHash", queryHash);
+        json.put("pitId", pitId);
+        json.put("sortValues", sortValues);
+        json.put("sortTypes", sortTypes(sortValues));
+        json.put("docs", docs);
+        json.put("pages", pages);
+        json.put("finished", finished);
+        json.put("updateTime", System.currentTimeMillis());
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("can not create checkpoint dir: " + dir);
+        }
+        Path tmp = new File(dir, file.getName() + ".tmp").toPath();
+        Files.write(tmp, json.toJSONString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+     * 删除一个job的所有进度, job正常结束后调用
+     */
+    public static void deleteAll(String dir, String jobKey) {
+        File[] files = new File(dir).listFiles((d, name) -> name.startsWith(jobKey + "-"));
+        if (files == null) {
+            return;
+        }
+        for (File f : files) {
+            if (!f.delete()) {
+                log.warn("delete checkpoint [{}] failed", f);
+            }
+        }
+    }
+
+    public static String hash(String... parts) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("MD5");
+            for (String part : parts) {
+                digest.update(String.valueOf(part).getBytes(StandardCharsets.UTF_8));
+                digest.update((byte) 0);
+            }
+            return String.format("%032x", new BigInteger(1, digest.digest()));
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * search_after只接受确定的类型, json往返之后需要按原来的类型还原
+     */
+    static String[] sortTypes(Object[] values) {
+        if (values == null) {
+            return null;
+        }
+        String[] types = new String[values.length];
+        for (int i = 0; i < values.length; i++) {
+            types[i] = values[i] == null ? null : values[i].getClass().getSimpleName();
+        }
+        return types;
+    }
+
+    static Object[] decodeSortValues(JSONArray values, JSONArray types) {
+        if (values == null) {
+            return null;
+        }
+        Object[] result = new Object[values.size()];
+        for (int i = 0; i < result.length; i++) {
+            String type = types == null ? null : types.getString(i);
+            if (values.get(i) == null || type == null) {
+                result[i] = values.get(i);
+                continue;
+            }
+            switch (type) {
+                case "Long":
+                    result[i] = values.getLong(i);
+                    break;
+                case "Integer":
+                    result[i] = values.getInteger(i);
+                    break;
+                case "Double":
+                    result[i] = values.getDouble(i);
+                    break;
+                case "Float":
+                    result[i] = values.getFloat(i);
+                    break;
+                case "BigInteger":
+                    result[i] = values.getBigInteger(i);
+                    break;
+                case "Boolean":
+                    result[i] = values.getBoolean(i);
+                    break;
+                default:
+                    result[i] = values.getString(i);
+            }
+        }
+        return result;
+    }
+
+    public String getPitId() {
+        return pitId;
+    }
+
+    public Object[] getSortValues() {
+        return sortValues;
+    }
+
+    public long getDocs() {
+        return docs;
+    }
+
+    public long getPages() {
+        return pages;
+    }
+
+    public boolean isFinished() {
+        return finished;
+    }
+}
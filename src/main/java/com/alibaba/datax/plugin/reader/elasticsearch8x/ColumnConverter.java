@@ -0,0 +1,435 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import com.alibaba.datax.common.element.BoolColumn;
+import com.alibaba.datax.common.element.BytesColumn;
+import com.alibaba.datax.common.element.Column;
+import com.alibaba.datax.common.element.DateColumn;
+import com.alibaba.datax.common.element.DoubleColumn;
+import com.alibaba.datax.common.element.LongColumn;
+import com.alibaba.datax.common.element.StringColumn;
+import com.alibaba.datax.common.exception.DataXException;
+import com.alibaba.fastjson.JSON;
+import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.xcontent.XContentParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.OffsetDateTime;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.time.format.DateTimeFormatterBuilder;
+import java.time.temporal.ChronoField;
+import java.time.temporal.TemporalAccessor;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 按mapping类型预先确定的列转换器: 解析_source时直接读成对应的java类型, 生成Column时不再逐个instanceof判断.
+ * 没有mapping或类型未知的字段使用GENERIC, 按值的实际类型转换.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public abstract class ColumnConverter {
+
+    public static final ColumnConverter GENERIC = new ColumnConverter() {
+        @Override
+        Object readScalar(XContentParser parser, XContentParser.Token token) throws IOException {
+            return readGeneric(parser, token);
+        }
+
+        @Override
+        public Column toColumn(Object value) {
+            return toGenericColumn(value);
+        }
+    };
+
+    private static final ColumnConverter STRING = new ColumnConverter() {
+        @Override
+        Object readScalar(XContentParser parser, XContentParser.Token token) throws IOException {
+            return token == XContentParser.Token.VALUE_EMBEDDED_OBJECT ? parser.binaryValue() : parser.text();
+        }
+
+        @Override
+        public Column toColumn(Object value) {
+            return value instanceof String ? new StringColumn((String) value) : toGenericColumn(value);
+        }
+    };
+
+    private static final ColumnConverter LONG = new ColumnConverter() {
+        @Override
+        Object readScalar(XContentParser parser, XContentParser.Token token) throws IOException {
+            if (token == XContentParser.Token.VALUE_NUMBER) {
+                XContentParser.NumberType numberType = parser.numberType();
+                if (numberType == XContentParser.NumberType.INT || numberType == XContentParser.NumberType.LONG) {
+                    return parser.longValue();
+                }
+                // unsigned_long超过long范围, 或者写入时带了小数
+                return numberType == XContentParser.NumberType.BIG_INTEGER ? new BigInteger(parser.text()) : parser.numberValue();
+            }
+            if (token == XContentParser.Token.VALUE_STRING) {
+                String text = parser.text();
+                try {
+                    return Long.parseLong(text);
+                } catch (NumberFormatException e) {
+                    return text;
+                }
+            }
+            return readGeneric(parser, token);
+        }
+
+        @Override
+        public Column toColumn(Object value) {
+            if (value instanceof Long) {
+                return new LongColumn((Long) value);
+            }
+            return value instanceof BigInteger ? new LongColumn((BigInteger) value) : toGenericColumn(value);
+        }
+    };
+
+    private static final ColumnConverter DOUBLE = new ColumnConverter() {
+        @Override
+        Object readScalar(XContentParser parser, XContentParser.Token token) throws IOException {
+            if (token == XContentParser.Token.VALUE_NUMBER) {
+                return parser.doubleValue();
+            }
+            if (token == XContentParser.Token.VALUE_STRING) {
+                String text = parser.text();
+                try {
+                    return Double.parseDouble(text);
+                } catch (NumberFormatException e) {
+                    return text;
+                }
+            }
+            return readGeneric(parser, token);
+        }
+
+        @Override
+        public Column toColumn(Object value) {
+            return value instanceof Double ? new DoubleColumn((Double) value) : toGenericColumn(value);
+        }
+    };
+
+    private static final ColumnConverter BOOLEAN = new ColumnConverter() {
+        @Override
+        Object readScalar(XContentParser parser, XContentParser.Token token) throws IOException {
+            if (token == XContentParser.Token.VALUE_STRING && ("true".equals(parser.text()) || "false".equals(parser.text()))) {
+                return Boolean.parseBoolean(parser.text());
+            }
+            return readGeneric(parser, token);
+        }
+
+        @Override
+        public Column toColumn(Object value) {
+            return value instanceof Boolean ? new BoolColumn((Boolean) value) : toGenericColumn(value);
+        }
+    };
+
+    private static final Map<String, ColumnConverter> DATE_CONVERTERS = new ConcurrentHashMap<>();
+
+    /**
+     * 按mapping类型选择转换器
+     */
+    public static ColumnConverter of(EsMapping.FieldMapping field) {
+        if (field == null || field.isConflict() || field.getType() == null) {
+            return GENERIC;
+        }
+        switch (field.getType()) {
+            case "keyword":
+            case "constant_keyword":
+            case "wildcard":
+            case "text":
+            case "match_only_text":
+            case "ip":
+            case "version":
+                return STRING;
+            case "long":
+            case "integer":
+            case "short":
+            case "byte":
+            case "unsigned_long":
+                return LONG;
+            case "double":
+            case "float":
+            case "half_float":
+            case "scaled_float":
+                return DOUBLE;
+            case "boolean":
+                return BOOLEAN;
+            case "date":
+            case "date_nanos":
+                String format = StringUtils.defaultIfBlank(field.getFormat(), DateConverter.DEFAULT_FORMAT);
+                return DATE_CONVERTERS.computeIfAbsent(format, DateConverter::new);
+            default:
+                return GENERIC;
+        }
+    }
+
+    /**
+     * parser停在字段值的第一个token上; 对象和数组保持原样(Map/List)
+     */
+    public Object read(XContentParser parser, XContentParser.Token token) throws IOException {
+        if (token == XContentParser.Token.START_OBJECT || token == XContentParser.Token.START_ARRAY
+                || token == XContentParser.Token.VALUE_NULL) {
+            return readGeneric(parser, token);
+        }
+        return readScalar(parser, token);
+    }
+
+    /**
+     * docvalue_fields/fields返回的值已经是json解析后的类型, 只有date需要再按format解析
+     */
+    public Object fromDocValue(Object value) {
+        return value;
+    }
+
+    abstract Object readScalar(XContentParser parser, XContentParser.Token token) throws IOException;
+
+    public abstract Column toColumn(Object value);
+
+    static Object readGeneric(XContentParser parser, XContentParser.Token token) throws IOException {
+        switch (token) {
+            case VALUE_STRING:
+                return parser.text();
+            case VALUE_NUMBER:
+                switch (parser.numberType()) {
+                    case INT:
+                    case LONG:
+                        return parser.longValue();
+                    case BIG_INTEGER:
+                        // 超过long范围的整数保留原样
+                        return parser.text();
+                    default:
+                        return parser.doubleValue();
+                }
+            case VALUE_BOOLEAN:
+                return parser.booleanValue();
+            case VALUE_NULL:
+                return null;
+            case START_OBJECT:
+                return parser.mapOrdered();
+            case START_ARRAY:
+                return parser.listOrderedMap();
+            case VALUE_EMBEDDED_OBJECT:
+                return parser.binaryValue();
+            default:
+                throw new IOException("unexpected token: " + token);
+        }
+    }
+
+    static Column toGenericColumn(Object value) {
+        Column col;
+        if (value == null) {
+            col = new StringColumn();
+        } else if (value instanceof String) {
+            col = new StringColumn((String) value);
+        } else if (value instanceof Integer) {
+            col = new LongColumn(((Integer) value).longValue());
+        } else if (value instanceof Long) {
+            col = new LongColumn((Long) value);
+        } else if (value instanceof Byte) {
+            col = new LongColumn(((Byte) value).longValue());
+        } else if (value instanceof Short) {
+            col = new LongColumn(((Short) value).longValue());
+        } else if (value instanceof Double) {
+            col = new DoubleColumn(BigDecimal.valueOf((Double) value));
+        } else if (value instanceof Float) {
+            col = new DoubleColumn(BigDecimal.valueOf(((Float) value).doubleValue()));
+        } else if (value instanceof BigInteger) {
+            col = new LongColumn((BigInteger) value);
+        } else if (value instanceof BigDecimal) {
+            col = new DoubleColumn((BigDecimal) value);
+        } else if (value instanceof Date) {
+            col = new DateColumn((Date) value);
+        } else if (value instanceof Boolean) {
+            col = new BoolColumn((Boolean) value);
+        } else if (value instanceof byte[]) {
+            col = new BytesColumn((byte[]) value);
+        } else if (value instanceof List) {
+            col = new StringColumn(JSON.toJSONString(value));
+        } else if (value instanceof Map) {
+            col = new StringColumn(JSON.toJSONString(value));
+        } else if (value instanceof Array) {
+            col = new StringColumn(JSON.toJSONString(value));
+        } else {
+            throw DataXException.asDataXException(ESReaderErrorCode.UNKNOWN_DATA_TYPE, "type:" + value.getClass().getName());
+        }
+        return col;
+    }
+
+    /**
+     * date字段按mapping的format(多个用||分隔)解析成Date, 解析失败保留原始字符串.
+     * 没有时区信息的按UTC处理, 与elasticsearch一致. 内置的命名格式按各自的pattern解析,
+     * 不支持的命名格式(只有时间、按周的格式等)不参与解析; 只有format中有epoch_millis/epoch_second时才把数字当作时间戳
+     */
+    static final class DateConverter extends ColumnConverter {
+        private static final Logger log = LoggerFactory.getLogger(DateConverter.class);
+
+        static final String DEFAULT_FORMAT = "strict_date_optional_time||epoch_millis";
+
+        private static final DateTimeFormatter ISO = new DateTimeFormatterBuilder()
+                .parseCaseInsensitive()
+                .append(DateTimeFormatter.ISO_LOCAL_DATE)
+                .optionalStart().appendLiteral('T').append(DateTimeFormatter.ISO_LOCAL_TIME).optionalEnd()
+                .optionalStart().appendOffsetId().optionalEnd()
+                .toFormatter();
+
+        /**
+         * elasticsearch内置的命名格式, 带strict_前缀的格式相同
+         */
+        private static final Map<String, DateTimeFormatter> NAMED = new HashMap<>();
+
+        static {
+            named(ISO, "date_optional_time", "date_optional_time_nanos");
+            named(pattern("yyyy", true), "year");
+            named(pattern("yyyy-MM", true), "year_month");
+            named(pattern("yyyy-MM-dd", false), "date", "year_month_day");
+            named(pattern("yyyy-DDD", false), "ordinal_date");
+            named(pattern("yyyy-MM-dd'T'HH", false), "date_hour");
+            named(pattern("yyyy-MM-dd'T'HH:mm", false), "date_hour_minute");
+            named(pattern("yyyy-MM-dd'T'HH:mm:ss", false), "date_hour_minute_second");
+            named(pattern("yyyy-MM-dd'T'HH:mm:ss.SSS", false), "date_hour_minute_second_fraction", "date_hour_minute_second_millis");
+            named(withOffset("yyyy-MM-dd'T'HH:mm:ss.SSS", "+HH:MM"), "date_time");
+            named(withOffset("yyyy-MM-dd'T'HH:mm:ss", "+HH:MM"), "date_time_no_millis");
+            named(withOffset("yyyy-DDD'T'HH:mm:ss.SSS", "+HH:MM"), "ordinal_date_time");
+            named(withOffset("yyyy-DDD'T'HH:mm:ss", "+HH:MM"), "ordinal_date_time_no_millis");
+            named(pattern("yyyyMMdd", false), "basic_date");
+            named(withOffset("yyyyMMdd'T'HHmmss.SSS", "+HHMM"), "basic_date_time");
+            named(withOffset("yyyyMMdd'T'HHmmss", "+HHMM"), "basic_date_time_no_millis");
+            named(pattern("yyyyDDD", false), "basic_ordinal_date");
+            named(withOffset("yyyyDDD'T'HHmmss.SSS", "+HHMM"), "basic_ordinal_date_time");
+            named(withOffset("yyyyDDD'T'HHmmss", "+HHMM"), "basic_ordinal_date_time_no_millis");
+        }
+
+        private static void named(DateTimeFormatter formatter, String... names) {
+            for (String name : names) {
+                NAMED.put(name, formatter);
+                NAMED.put("strict_" + name, formatter);
+            }
+        }
+
+        /**
+         * @param firstDay 缺少的月、日按1补齐
+         */
+        private static DateTimeFormatter pattern(String pattern, boolean firstDay) {
+            DateTimeFormatterBuilder builder = new DateTimeFormatterBuilder().appendPattern(pattern);
+            if (firstDay) {
+                builder.parseDefaulting(ChronoField.MONTH_OF_YEAR, 1).parseDefaulting(ChronoField.DAY_OF_MONTH, 1);
+            }
+            return builder.toFormatter(Locale.ROOT);
+        }
+
+        /**
+         * 时区为Z或者按offsetPattern的偏移
+         */
+        private static DateTimeFormatter withOffset(String pattern, String offsetPattern) {
+            return new DateTimeFormatterBuilder().appendPattern(pattern).appendOffset(offsetPattern, "Z").toFormatter(Locale.ROOT);
+        }
+
+        private final List<DateTimeFormatter> formatters = new ArrayList<>();
+        private final boolean epochMillis;
+        private final boolean epochSecond;
+
+        DateConverter(String format) {
+            boolean millis = false;
+            boolean second = false;
+            for (String item : format.split("\\|\\|")) {
+                item = item.trim();
+                DateTimeFormatter formatter = null;
+                if ("epoch_millis".equals(item)) {
+                    millis = true;
+                } else if ("epoch_second".equals(item)) {
+                    second = true;
+                } else if (NAMED.containsKey(item)) {
+                    formatter = NAMED.get(item);
+                } else if (item.matches("[a-z_]+")) {
+                    log.warn("date format [{}] is not supported, values in this format are kept as string", item);
+                } else {
+                    try {
+                        formatter = DateTimeFormatter.ofPattern(item, Locale.ROOT);
+                    } catch (IllegalArgumentException e) {
+                        log.warn("date format [{}] is not supported, values in this format are kept as string", item);
+                    }
+                }
+                if (formatter != null && !formatters.contains(formatter)) {
+                    formatters.add(formatter);
+                }
+            }
+            // 两个都有时数字按毫秒处理, 和elasticsearch先尝试epoch_millis一致
+            this.epochMillis = millis;
+            this.epochSecond = second;
+        }
+
+        @Override
+        Object readScalar(XContentParser parser, XContentParser.Token token) throws IOException {
+            if (token == XContentParser.Token.VALUE_NUMBER) {
+                // 没有epoch格式时elasticsearch把数字当作字符串按format解析, 例如basic_date的20240101
+                return isEpoch() ? fromEpoch(parser.doubleValue()) : parse(parser.text());
+            }
+            if (token != XContentParser.Token.VALUE_STRING) {
+                return readGeneric(parser, token);
+            }
+            return parse(parser.text());
+        }
+
+        @Override
+        public Object fromDocValue(Object value) {
+            if (value instanceof Number) {
+                return isEpoch() ? fromEpoch(((Number) value).doubleValue()) : parse(value.toString());
+            }
+            return value instanceof String ? parse((String) value) : value;
+        }
+
+        private boolean isEpoch() {
+            return epochMillis || epochSecond;
+        }
+
+        private Object parse(String text) {
+            for (DateTimeFormatter formatter : formatters) {
+                try {
+                    return toDate(formatter.parse(text));
+                } catch (RuntimeException e) {
+                    // 尝试下一个格式
+                }
+            }
+            if (isEpoch() && !text.isEmpty()) {
+                try {
+                    return fromEpoch(Double.parseDouble(text));
+                } catch (NumberFormatException e) {
+                    return text;
+                }
+            }
+            return text;
+        }
+
+        private Date fromEpoch(double value) {
+            return new Date(epochMillis ? (long) value : (long) (value * 1000));
+        }
+
+        private static Date toDate(TemporalAccessor temporal) {
+            if (temporal.isSupported(ChronoField.OFFSET_SECONDS)) {
+                return Date.from(OffsetDateTime.from(temporal).toInstant());
+            }
+            if (temporal.isSupported(ChronoField.HOUR_OF_DAY)) {
+                return Date.from(LocalDateTime.from(temporal).toInstant(ZoneOffset.UTC));
+            }
+            return Date.from(LocalDate.from(temporal).atStartOfDay().toInstant(ZoneOffset.UTC));
+        }
+
+        @Override
+        public Column toColumn(Object value) {
+            return value instanceof Date ? new DateColumn((Date) value) : toGenericColumn(value);
+        }
+    }
+}
@@ -0,0 +1,246 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import org.apache.commons.lang3.StringUtils;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * EsTable编译后的不可变列计划, 在Task.init中只编译一次.
+ * <p>
+ * 所有叶子字段按column树深度优先的顺序映射到定长slot数组的下标(同名的最终列共用一个slot),
+ * 最终列名、默认值、子字段的计划都预先算好, 每条文档只需要按下标写数组.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public final class ColumnPlan {
+    private final Level root;
+    private final String[] names;
+    private final Map<String, Integer> slotIndex;
+    private final String[] paths;
+    private final List<String> leafPaths;
+    private final boolean[] topLevel;
+    private final boolean[] hasDefault;
+    private final ColumnConverter[] converters;
+    private final int deleteSlot;
+
+    private ColumnPlan(Level root, Layout layout, String deleteFilterKey) {
+        this.root = root;
+        this.slotIndex = Collections.unmodifiableMap(layout.slotIndex);
+        this.names = layout.slotIndex.keySet().toArray(new String[0]);
+        this.paths = layout.paths.toArray(new String[0]);
+        this.leafPaths = Collections.unmodifiableList(new ArrayList<>(layout.leafPaths));
+        this.topLevel = new boolean[names.length];
+        this.hasDefault = new boolean[names.length];
+        this.converters = layout.converters.toArray(new ColumnConverter[0]);
+        for (int slot = 0; slot < names.length; slot++) {
+            topLevel[slot] = layout.topLevel.get(slot);
+            hasDefault[slot] = layout.hasDefault.get(slot);
+        }
+        Integer delete = StringUtils.isBlank(deleteFilterKey) ? null : slotIndex.get(deleteFilterKey);
+        this.deleteSlot = delete == null ? -1 : delete;
+    }
+
+    public static ColumnPlan compile(EsTable table) {
+        return compile(table, null);
+    }
+
+    /**
+     * mapping不为空时按字段类型选择转换器, 否则全部使用{@link ColumnConverter#GENERIC}
+     */
+    public static ColumnPlan compile(EsTable table, EsMapping mapping) {
+        Layout layout = new Layout(mapping);
+        Level root = new Level(table.getColumn(), table.getNameCase(), "", layout);
+        return new ColumnPlan(root, layout, table.getDeleteFilterKey());
+    }
+
+    public Level getRoot() {
+        return root;
+    }
+
+    /**
+     * slot数组的长度
+     */
+    public int width() {
+        return names.length;
+    }
+
+    public String getName(int slot) {
+        return names[slot];
+    }
+
+    /**
+     * 最终列名对应的slot, 不存在返回-1
+     */
+    public int slotOf(String name) {
+        Integer slot = slotIndex.get(name);
+        return slot == null ? -1 : slot;
+    }
+
+    /**
+     * slot对应的_source字段路径(用.连接); 多个字段写入同一个slot时为null
+     */
+    public String getPath(int slot) {
+        return paths[slot];
+    }
+
+    /**
+     * slot是否来自第一层的字段
+     */
+    public boolean isTopLevel(int slot) {
+        return topLevel[slot];
+    }
+
+    /**
+     * 写入slot的字段是否配置了默认值
+     */
+    public boolean hasDefault(int slot) {
+        return hasDefault[slot];
+    }
+
+    /**
+     * 生成slot对应Column的转换器; 多个不同类型的字段写入同一个slot时为GENERIC
+     */
+    public ColumnConverter getConverter(int slot) {
+        return converters[slot];
+    }
+
+    /**
+     * 所有叶子字段的路径(包括写入同一个slot的多个字段), 不重复
+     */
+    public List<String> getPaths() {
+        return leafPaths;
+    }
+
+    /**
+     * deleteFilterKey对应的slot, 这一列不参与过滤也不输出; 没有配置返回-1
+     */
+    public int getDeleteSlot() {
+        return deleteSlot;
+    }
+
+    /**
+     * column树中的一层
+     */
+    public static final class Level {
+        final EsField[] fields;
+        /**
+         * 字段在_source中的完整路径
+         */
+        final String[] paths;
+        /**
+         * 叶子字段写入的slot, 带child的字段为-1
+         */
+        final int[] slots;
+        final Object[] defaults;
+        final ColumnConverter[] converters;
+        final Level[] children;
+        final Map<String, int[]> positions = new HashMap<>();
+
+        Level(List<EsField> column, String nameCase, String prefix, Layout layout) {
+            this.fields = column.toArray(new EsField[0]);
+            this.paths = new String[fields.length];
+            this.slots = new int[fields.length];
+            this.defaults = new Object[fields.length];
+            this.converters = new ColumnConverter[fields.length];
+            this.children = new Level[fields.length];
+            for (int i = 0; i < fields.length; i++) {
+                EsField field = fields[i];
+                paths[i] = prefix + field.getName();
+                converters[i] = layout.converterOf(paths[i]);
+                if (field.hasChild()) {
+                    slots[i] = -1;
+                    children[i] = new Level(field.getChild(), nameCase, paths[i] + ".", layout);
+                } else {
+                    slots[i] = layout.add(field.getFinalName(nameCase), paths[i], prefix.isEmpty(),
+                            field.getValue() != null, converters[i]);
+                    defaults[i] = field.getValue();
+                }
+                int[] old = positions.get(field.getName());
+                int[] now;
+                if (old == null) {
+                    now = new int[]{i};
+                } else {
+                    now = Arrays.copyOf(old, old.length + 1);
+                    now[old.length] = i;
+                }
+                positions.put(field.getName(), now);
+            }
+        }
+
+        public int size() {
+            return fields.length;
+        }
+
+        public boolean isLeaf(int position) {
+            return children[position] == null;
+        }
+
+        public int getSlot(int position) {
+            return slots[position];
+        }
+
+        public Object getDefault(int position) {
+            return defaults[position];
+        }
+
+        public Level getChild(int position) {
+            return children[position];
+        }
+
+        public ColumnConverter getConverter(int position) {
+            return converters[position];
+        }
+
+        public String getPath(int position) {
+            return paths[position];
+        }
+    }
+
+    private static final class Layout {
+        final Map<String, Integer> slotIndex = new LinkedHashMap<>();
+        final List<String> paths = new ArrayList<>();
+        final List<Boolean> topLevel = new ArrayList<>();
+        final List<Boolean> hasDefault = new ArrayList<>();
+        final List<ColumnConverter> converters = new ArrayList<>();
+        final Set<String> leafPaths = new LinkedHashSet<>();
+        final EsMapping mapping;
+
+        Layout(EsMapping mapping) {
+            this.mapping = mapping;
+        }
+
+        ColumnConverter converterOf(String path) {
+            return mapping == null ? ColumnConverter.GENERIC : ColumnConverter.of(mapping.get(path));
+        }
+
+        int add(String finalName, String path, boolean top, boolean withDefault, ColumnConverter converter) {
+            leafPaths.add(path);
+            Integer slot = slotIndex.get(finalName);
+            if (slot == null) {
+                slot = slotIndex.size();
+                slotIndex.put(finalName, slot);
+                paths.add(path);
+                topLevel.add(top);
+                hasDefault.add(withDefault);
+                converters.add(converter);
+            } else {
+                paths.set(slot, null);
+                topLevel.set(slot, false);
+                hasDefault.set(slot, hasDefault.get(slot) || withDefault);
+                if (converters.get(slot) != converter) {
+                    converters.set(slot, ColumnConverter.GENERIC);
+                }
+            }
+            return slot;
+        }
+    }
+}
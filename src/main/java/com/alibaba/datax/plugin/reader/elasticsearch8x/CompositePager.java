@@ -0,0 +1,298 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.script.Script;
+import org.elasticsearch.script.ScriptType;
+import org.elasticsearch.search.aggregations.AggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeAggregationBuilder;
+import org.elasticsearch.search.aggregations.bucket.composite.CompositeValuesSourceBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.xcontent.DeprecationHandler;
+import org.elasticsearch.xcontent.NamedXContentRegistry;
+import org.elasticsearch.xcontent.XContentParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * search中只有一个composite聚合时, 按after_key翻页读取聚合结果, 每个bucket作为一条"文档":
+ * <p>
+ * 1. bucket的key按source名称展开到第一层, doc_count保留;
+ * 2. 单值指标聚合(sum/avg/max/cardinality...)取value, 多值指标聚合(stats/percentiles...)保留为对象,
+ * 带buckets的子聚合(terms等)为对象数组, 单bucket子聚合(filter/nested)展开为对象, 由column的child继续取值;
+ * 3. 拆分时按第一个terms source的值hash分区: 查询时用脚本只保留有值落在本分区的文档,
+ * 返回后再丢掉key不属于本分区的bucket, 每个bucket只会在一个分区中完整地出现一次.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class CompositePager {
+    private static final Logger log = LoggerFactory.getLogger(CompositePager.class);
+
+    /**
+     * 支持按值分区的字段类型, 这些类型在painless中的doc值和响应中的key转成字符串后一致
+     */
+    static final Collection<String> PARTITION_TYPES = Arrays.asList("keyword", "long", "integer", "short", "byte", "boolean", "ip");
+
+    private static final String PARTITION_SCRIPT =
+            "if (!doc.containsKey(params.field) || doc[params.field].size() == 0) { return params.id == 0; } "
+                    + "for (def v : doc[params.field]) { "
+                    + "if (Math.floorMod(String.valueOf(v).hashCode(), params.max) == params.id) { return true; } } "
+                    + "return false;";
+
+    private final ESClient esClient;
+    private final String index;
+    private final SearchSourceBuilder sourceBuilder;
+    private final String searchType;
+    private final CompositeAggregationBuilder composite;
+    private final List<String> sourceNames = new ArrayList<>();
+    private int partitionId = 0;
+    private int partitionMax = 1;
+    private Map<String, Object> afterKey;
+    private boolean exhausted = false;
+
+    public CompositePager(ESClient esClient, String index, SearchSourceBuilder sourceBuilder, String searchType) {
+        this.esClient = esClient;
+        this.index = index;
+        this.sourceBuilder = sourceBuilder;
+        this.searchType = searchType;
+        this.composite = find(sourceBuilder);
+        if (composite == null) {
+            throw new IllegalArgumentException("search does not contain a composite aggregation");
+        }
+        for (CompositeValuesSourceBuilder<?> source : composite.sources()) {
+            sourceNames.add(source.name());
+        }
+        sourceBuilder.size(0);
+        sourceBuilder.trackTotalHits(false);
+    }
+
+    private static CompositeAggregationBuilder find(SearchSourceBuilder sourceBuilder) {
+        if (sourceBuilder.aggregations() == null) {
+            return null;
+        }
+        Collection<AggregationBuilder> aggregations = sourceBuilder.aggregations().getAggregatorFactories();
+        if (aggregations.size() != 1) {
+            return null;
+        }
+        AggregationBuilder aggregation = aggregations.iterator().next();
+        return aggregation instanceof CompositeAggregationBuilder ? (CompositeAggregationBuilder) aggregation : null;
+    }
+
+    private static JSONObject compositeOf(String query) {
+        if (StringUtils.isBlank(query)) {
+            return null;
+        }
+        JSONObject search = JSON.parseObject(query);
+        JSONObject aggregations = search.getJSONObject("aggs");
+        if (aggregations == null) {
+            aggregations = search.getJSONObject("aggregations");
+        }
+        if (aggregations == null || aggregations.size() != 1) {
+            return null;
+        }
+        JSONObject aggregation = aggregations.getJSONObject(aggregations.keySet().iterator().next());
+        return aggregation == null ? null : aggregation.getJSONObject("composite");
+    }
+
+    /**
+     * search中是否只有一个composite聚合
+     */
+    public static boolean isComposite(String query) {
+        return compositeOf(query) != null;
+    }
+
+    /**
+     * 第一个source是字段上的terms时返回字段名, 否则返回null, 不能分区
+     */
+    public static String getPartitionField(String query) {
+        JSONObject composite = compositeOf(query);
+        JSONArray sources = composite == null ? null : composite.getJSONArray("sources");
+        if (sources == null || sources.isEmpty()) {
+            return null;
+        }
+        JSONObject first = sources.getJSONObject(0);
+        if (first == null || first.size() != 1) {
+            return null;
+        }
+        JSONObject source = first.getJSONObject(first.keySet().iterator().next());
+        JSONObject terms = source == null ? null : source.getJSONObject("terms");
+        return terms == null ? null : terms.getString("field");
+    }
+
+    /**
+     * 只读取第一个source的key按hash落在partitionId的bucket
+     */
+    public void partition(String field, int partitionId, int partitionMax) {
+        this.partitionId = partitionId;
+        this.partitionMax = partitionMax;
+        Map<String, Object> params = new HashMap<>();
+        params.put("field", field);
+        params.put("id", partitionId);
+        params.put("max", partitionMax);
+        Script script = new Script(ScriptType.INLINE, Script.DEFAULT_SCRIPT_LANG, PARTITION_SCRIPT, params);
+        BoolQueryBuilder bool = QueryBuilders.boolQuery().filter(QueryBuilders.scriptQuery(script));
+        if (sourceBuilder.query() != null) {
+            bool.must(sourceBuilder.query());
+        }
+        sourceBuilder.query(bool);
+        log.info("read composite partition:[{}/{}] of field [{}]", partitionId, partitionMax, field);
+    }
+
+    /**
+     * 从保存的after_key继续, values按source的顺序排列
+     */
+    public void resume(Object[] afterValues) {
+        Map<String, Object> after = new LinkedHashMap<>();
+        for (int i = 0; i < sourceNames.size() && i < afterValues.length; i++) {
+            after.put(sourceNames.get(i), afterValues[i]);
+        }
+        this.afterKey = after;
+    }
+
+    /**
+     * 当前的after_key, values按source的顺序排列; 还没有翻页时为null
+     */
+    public Object[] getAfterValues() {
+        if (afterKey == null) {
+            return null;
+        }
+        Object[] values = new Object[sourceNames.size()];
+        for (int i = 0; i < values.length; i++) {
+            values[i] = afterKey.get(sourceNames.get(i));
+        }
+        return values;
+    }
+
+    public boolean hasNext() {
+        return !exhausted;
+    }
+
+    /**
+     * 读取下一页bucket, 每个bucket展开成一个Map
+     */
+    public List<Map<String, Object>> next() throws IOException {
+        composite.aggregateAfter(afterKey);
+        Request request = new Request("POST", "/" + index + "/_search");
+        request.addParameter("search_type", searchType);
+        request.setJsonEntity(Strings.toString(sourceBuilder));
+        request.setOptions(esClient.getSearchOptions());
+        BytesReference body = new BytesArray(EntityUtils.toByteArray(
+                esClient.getClient().getLowLevelClient().performRequest(request).getEntity()));
+        Map<String, Object> response;
+        try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY,
+                DeprecationHandler.IGNORE_DEPRECATIONS, body)) {
+            response = parser.map();
+        }
+        Map<String, Object> shards = asMap(response.get("_shards"));
+        if (shards != null) {
+            SearchPager.checkShards(shards);
+        }
+        Map<String, Object> aggregations = asMap(response.get("aggregations"));
+        Map<String, Object> aggregation = aggregations == null ? null : asMap(aggregations.get(composite.getName()));
+        if (aggregation == null) {
+            throw new IOException("composite aggregation [" + composite.getName() + "] is missing in the response");
+        }
+        Object value = aggregation.get("buckets");
+        List<?> buckets = value instanceof List ? (List<?>) value : Collections.emptyList();
+        List<Map<String, Object>> rows = new ArrayList<>(buckets.size());
+        for (Object item : buckets) {
+            Map<String, Object> bucket = asMap(item);
+            if (bucket != null && inPartition(bucket)) {
+                rows.add(flatten(bucket));
+            }
+        }
+        Map<String, Object> after = asMap(aggregation.get("after_key"));
+        exhausted = after == null || buckets.size() < composite.size();
+        if (after != null) {
+            afterKey = after;
+        }
+        return rows;
+    }
+
+    private boolean inPartition(Map<String, Object> bucket) {
+        if (partitionMax <= 1) {
+            return true;
+        }
+        Map<String, Object> keys = asMap(bucket.get("key"));
+        Object key = keys == null ? null : keys.get(sourceNames.get(0));
+        if (key == null) {
+            return partitionId == 0;
+        }
+        return Math.floorMod(String.valueOf(key).hashCode(), partitionMax) == partitionId;
+    }
+
+    static Map<String, Object> flatten(Map<String, Object> bucket) {
+        Map<String, Object> row = new LinkedHashMap<>();
+        for (Map.Entry<String, Object> entry : bucket.entrySet()) {
+            Object value = entry.getValue();
+            Map<String, Object> map = asMap(value);
+            if ("key".equals(entry.getKey()) && map != null) {
+                row.putAll(map);
+            } else if (map != null) {
+                row.put(entry.getKey(), aggregationValue(map));
+            } else {
+                row.put(entry.getKey(), value);
+            }
+        }
+        return row;
+    }
+
+    private static Object aggregationValue(Map<String, Object> aggregation) {
+        Object buckets = aggregation.get("buckets");
+        if (buckets instanceof List) {
+            List<Object> items = new ArrayList<>();
+            for (Object item : (List<?>) buckets) {
+                Map<String, Object> bucket = asMap(item);
+                items.add(bucket == null ? item : flatten(bucket));
+            }
+            return items;
+        }
+        Map<String, Object> keyed = asMap(buckets);
+        if (keyed != null) {
+            // keyed的filters/range等, 按bucket名称展开
+            Map<String, Object> items = new LinkedHashMap<>();
+            for (Map.Entry<String, Object> entry : keyed.entrySet()) {
+                Map<String, Object> bucket = asMap(entry.getValue());
+                items.put(entry.getKey(), bucket == null ? entry.getValue() : flatten(bucket));
+            }
+            return items;
+        }
+        if (aggregation.containsKey("value") && (aggregation.size() == 1
+                || aggregation.size() == 2 && aggregation.containsKey("value_as_string"))) {
+            return aggregation.get("value");
+        }
+        if (aggregation.containsKey("doc_count")) {
+            return flatten(aggregation);
+        }
+        return aggregation;
+    }
+
+    /**
+     * parser.map()解析出的对象都是{@code Map<String, Object>}, 不是对象时返回null
+     */
+    @SuppressWarnings("unchecked")
+    private static Map<String, Object> asMap(Object value) {
+        return value instanceof Map ? (Map<String, Object>) value : null;
+    }
+}
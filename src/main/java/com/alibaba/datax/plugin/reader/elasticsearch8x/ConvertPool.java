@@ -0,0 +1,238 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.exception.DataXException;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletionService;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorCompletionService;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+ * task内的并行转换阶段: 一页的hit切成若干批, 在线程池中解析、展开、过滤并生成Record,
+ * task线程按提交顺序(ordered)或完成顺序取回每批结果再交给RecordSender.
+ * <p>
+ * 翻页仍然只有一个游标, 不会在集群上多开scroll/pit; 每个线程有自己的{@link Converter},
+ * 指标、脏数据和发送都在task线程中处理. 在途的批数有上限, 转换跟不上发送时提交会阻塞.
+ * 每批带着从页上分来的预留内存, 发送完后在{@link MemoryGovernor}中释放.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class ConvertPool implements Closeable {
+
+    /**
+     * 一个线程独占的转换状态, 不需要线程安全
+     */
+    public interface Converter {
+        /**
+         * @param hit SearchHit或已经解析好的SourceFrame
+         */
+        void convert(Object hit, Batch batch);
+    }
+
+    /**
+     * 一批hit的转换结果, 由task线程按顺序消费
+     */
+    public static final class Batch {
+        /**
+         * 提交时附带的标记, 例如hit所属的split
+         */
+        final Object tag;
+        /**
+         * 本批在MemoryGovernor中预留的字节数
+         */
+        final long bytes;
+        final List<Record> records = new ArrayList<>();
+        /**
+         * 和records一一对应, 不为null时该record是脏数据
+         */
+        final List<String> dirty = new ArrayList<>();
+        final List<String> errorIds = new ArrayList<>();
+        final List<IOException> errors = new ArrayList<>();
+        final long[] decodeNanos;
+        final int[] fanOut;
+        int docs = 0;
+        int rejected = 0;
+
+        Batch(Object tag, long bytes, int capacity) {
+            this.tag = tag;
+            this.bytes = bytes;
+            this.decodeNanos = new long[capacity];
+            this.fanOut = new int[capacity];
+        }
+
+        /**
+         * 一条文档解析完成, decodeNanos小于0表示解析不在转换线程中
+         */
+        public void onDocument(long decodeNanos, int rows) {
+            this.decodeNanos[docs] = decodeNanos;
+            this.fanOut[docs] = rows;
+            docs++;
+        }
+
+        public void onParseError(String id, IOException e) {
+            errorIds.add(id);
+            errors.add(e);
+        }
+
+        public void onRejected() {
+            rejected++;
+        }
+
+        public void add(Record record, String dirtyMessage) {
+            records.add(record);
+            dirty.add(dirtyMessage);
+        }
+    }
+
+    private final ExecutorService executor;
+    private final CompletionService<Batch> completion;
+    private final ThreadLocal<Converter> converters;
+    private final MemoryGovernor memory;
+    private final int threads;
+    private final int maxPending;
+    /**
+     * ordered模式下按提交顺序排队的结果
+     */
+    private final Deque<Future<Batch>> queue = new ArrayDeque<>();
+    private int pending = 0;
+    /**
+     * 已提交还没发送完的批预留的字节数
+     */
+    private long pendingBytes = 0;
+
+    /**
+     * @param threads 转换线程数
+     * @param ordered true时按hit的顺序发送, false时哪批先转换完先发送
+     * @param factory 在每个转换线程中创建一次
+     */
+    public ConvertPool(int threads, boolean ordered, MemoryGovernor memory, Supplier<Converter> factory, String name) {
+        this.threads = threads;
+        this.memory = memory;
+        this.maxPending = threads * 4;
+        this.converters = ThreadLocal.withInitial(factory);
+        AtomicInteger seq = new AtomicInteger();
+        this.executor = Executors.newFixedThreadPool(threads, r -> {
+            Thread thread = new Thread(r, name + "-" + seq.getAndIncrement());
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.completion = ordered ? null : new ExecutorCompletionService<>(executor);
+    }
+
+    /**
+     * 一页hit每批的条数, 每个线程大约分到两批
+     */
+    public int batchSize(int hits) {
+        return Math.max(1, (hits + threads * 2 - 1) / (threads * 2));
+    }
+
+    /**
+     * 提交一批hit; 在途的批数超过上限时先把最早(或已完成)的结果交给sink
+     *
+     * @param bytes 这批hit预留的内存, 发送完后释放
+     */
+    public void submit(List<?> hits, Object tag, long bytes, Consumer<Batch> sink) {
+        final List<?> items = new ArrayList<>(hits);
+        Callable<Batch> job = () -> {
+            Converter converter = converters.get();
+            Batch batch = new Batch(tag, bytes, items.size());
+            for (Object hit : items) {
+                converter.convert(hit, batch);
+            }
+            return batch;
+        };
+        if (completion == null) {
+            queue.add(executor.submit(job));
+        } else {
+            completion.submit(job);
+        }
+        pending++;
+        pendingBytes += bytes;
+        while (pending > maxPending) {
+            deliver(takeNext(), sink);
+        }
+        if (completion != null) {
+            // 顺带发送已经转换完的批, 不等待
+            Future<Batch> done;
+            while ((done = completion.poll()) != null) {
+                pending--;
+                deliver(get(done), sink);
+            }
+        }
+    }
+
+    /**
+     * 等待所有在途的批转换完成并交给sink, 保存进度前和读完时调用
+     */
+    public void flush(Consumer<Batch> sink) {
+        while (pending > 0) {
+            deliver(takeNext(), sink);
+        }
+    }
+
+    private void deliver(Batch batch, Consumer<Batch> sink) {
+        try {
+            sink.accept(batch);
+        } finally {
+            pendingBytes -= batch.bytes;
+            memory.release(batch.bytes);
+        }
+    }
+
+    private Batch takeNext() {
+        Future<Batch> next;
+        if (completion == null) {
+            next = queue.poll();
+        } else {
+            try {
+                next = completion.take();
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw DataXException.asDataXException(ESReaderErrorCode.ES_SEARCH_ERROR, "interrupted while converting records", e);
+            }
+        }
+        pending--;
+        return get(next);
+    }
+
+    private static Batch get(Future<Batch> future) {
+        try {
+            return future.get();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw DataXException.asDataXException(ESReaderErrorCode.ES_SEARCH_ERROR, "interrupted while converting records", e);
+        } catch (ExecutionException e) {
+            Throwable cause = e.getCause();
+            if (cause instanceof RuntimeException) {
+                throw (RuntimeException) cause;
+            }
+            throw DataXException.asDataXException(ESReaderErrorCode.ES_SEARCH_ERROR, cause);
+        }
+    }
+
+    @Override
+    public void close() {
+        for (Future<Batch> future : queue) {
+            future.cancel(true);
+        }
+        queue.clear();
+        pending = 0;
+        memory.release(pendingBytes);
+        pendingBytes = 0;
+        executor.shutdownNow();
+    }
+}
@@ -1,20 +1,68 @@
 package com.alibaba.datax.plugin.reader.elasticsearch8x;
 
 
+import com.alibaba.datax.common.util.Configuration;
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
 import org.apache.commons.lang3.StringUtils;
+import org.apache.http.ContentTooLongException;
+import org.apache.http.HttpEntity;
 import org.apache.http.HttpHost;
+import org.apache.http.HttpResponse;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.UsernamePasswordCredentials;
+import org.apache.http.entity.AbstractHttpEntity;
+import org.apache.http.entity.ContentType;
 import org.apache.http.impl.client.BasicCredentialsProvider;
+import org.apache.http.impl.nio.reactor.IOReactorConfig;
+import org.apache.http.nio.ContentDecoder;
+import org.apache.http.nio.IOControl;
+import org.apache.http.nio.protocol.AbstractAsyncResponseConsumer;
+import org.apache.http.protocol.HttpContext;
+import org.apache.http.util.EntityUtils;
+import org.elasticsearch.action.search.ClosePointInTimeRequest;
+import org.elasticsearch.action.search.OpenPointInTimeRequest;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Request;
 import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.client.Response;
 import org.elasticsearch.client.RestClient;
 import org.elasticsearch.client.RestClientBuilder;
 import org.elasticsearch.client.RestHighLevelClient;
 import org.elasticsearch.client.indices.GetIndexRequest;
+import org.elasticsearch.client.indices.GetIndexResponse;
+import org.elasticsearch.client.sniff.SniffOnFailureListener;
+import org.elasticsearch.client.sniff.ElasticsearchNodesSniffer;
+import org.elasticsearch.client.sniff.Sniffer;
+import org.elasticsearch.client.sniff.SnifferBuilder;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.settings.Settings;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.xcontent.XContentType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
+import java.io.ByteArrayInputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * @author liufei
@@ -23,34 +71,88 @@ import java.io.IOException;
 public class ESClient {
     private static final Logger log = LoggerFactory.getLogger(ESClient.class);
 
+    /**
+     * 同一个jvm内按连接参数共享的客户端, 一个TaskGroup内的task共用连接池和io线程
+     */
+    private static final Map<String, SharedClient> POOL = new HashMap<>();
+
     private RestHighLevelClient client = null;
+    private String poolKey = null;
+    private RequestOptions searchOptions = RequestOptions.DEFAULT;
+    /**
+     * 查询响应在网络上传输的字节数(解压之前)
+     */
+    private final AtomicLong wireBytes = new AtomicLong();
 
-    public RestHighLevelClient createClient(String endpoints, String username, String password){
+    public RestHighLevelClient createClient(String endpoints, String username, String password) {
+        return createClient(endpoints, username, password, new ClientOptions());
+    }
+
+    public RestHighLevelClient createClient(Configuration conf) {
+        ClientOptions options = new ClientOptions();
+        options.discovery = Key.isDiscovery(conf);
+        options.multiThread = Key.isMultiThread(conf);
+        options.maxConnPerRoute = Key.getMaxConnPerRoute(conf);
+        options.maxConnTotal = Key.getMaxConnTotal(conf);
+        options.sniffInterval = Key.getSniffInterval(conf);
+        options.compression = Key.isCompression(conf);
+        this.searchOptions = buildSearchOptions(Key.getResponseFormat(conf));
+        return createClient(Key.getEndpoints(conf), Key.getAccessID(conf), Key.getAccessKey(conf), options);
+    }
 
+    private RestHighLevelClient createClient(String endpoints, String username, String password, ClientOptions options) {
+        String key = StringUtils.join(new Object[]{endpoints, username, password, options}, '|');
+        synchronized (POOL) {
+            SharedClient shared = POOL.get(key);
+            if (shared == null) {
+                shared = new SharedClient(endpoints, username, password, options);
+                POOL.put(key, shared);
+                log.info("======= RestHighLevelClient 初始化成功 =======");
+            }
+            shared.refs++;
+            if (poolKey != null) {
+                release();
+            }
+            poolKey = key;
+            client = shared.client;
+        }
+        return client;
+    }
+
+    static HttpHost[] parseHosts(String endpoints) {
         String[] endpointSplit = endpoints.split(",");
         HttpHost[] hosts = new HttpHost[endpointSplit.length];
         for (int i = 0; i < endpointSplit.length; i++) {
-            String[] ips = endpointSplit[0].split(":");
-            String ip = ips[0];
-            int port = Integer.parseInt(ips[1]);
-            hosts[i] = new HttpHost(ip, port, HttpHost.DEFAULT_SCHEME_NAME);
-        }
-        RestClientBuilder builder = RestClient.builder(hosts);
-        // 账号密码认证
-        if (StringUtils.isNotBlank(username) && StringUtils.isNotBlank(password)) {
-            final BasicCredentialsProvider basicCredentialsProvider = new BasicCredentialsProvider();
-            basicCredentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
-            builder.setHttpClientConfigCallback(f -> f.setDefaultCredentialsProvider(basicCredentialsProvider));
-        }
-        client =  new RestHighLevelClient(builder);
-        log.info("======= RestHighLevelClient 初始化成功 =======");
-        return client;
+            // 兼容带scheme的写法, 如https://127.0.0.1:9200
+            hosts[i] = HttpHost.create(endpointSplit[i].trim());
+        }
+        return hosts;
     }
 
     public RestHighLevelClient getClient() {
         return client;
     }
 
+    /**
+     * 查询使用的RequestOptions: 按配置要求返回SMILE/CBOR, 并统计响应的字节数
+     */
+    public RequestOptions getSearchOptions() {
+        return searchOptions;
+    }
+
+    public long getWireBytes() {
+        return wireBytes.get();
+    }
+
+    private RequestOptions buildSearchOptions(XContentType responseFormat) {
+        RequestOptions.Builder builder = RequestOptions.DEFAULT.toBuilder();
+        if (responseFormat != XContentType.JSON) {
+            builder.addHeader("Accept", responseFormat.mediaTypeWithoutParameters());
+        }
+        builder.setHttpAsyncResponseConsumerFactory(() -> new CountingResponseConsumer(wireBytes));
+        return builder.build();
+    }
+
 
     public boolean indicesExists(String indexName) throws Exception {
         GetIndexRequest request = new GetIndexRequest(indexName);
@@ -58,10 +160,217 @@ public class ESClient {
     }
 
     /**
-     * 关闭RestHighLevelClient客户端
+     * 索引(含通配符/别名)下所有主分片的数量
+     */
+    public int getShardCount(String indexName) throws IOException {
+        int shards = 0;
+        for (int count : getShardCounts(indexName).values()) {
+            shards += count;
+        }
+        return Math.max(shards, 1);
+    }
+
+    /**
+     * 通配符、别名和data stream展开后的具体索引及其主分片数
+     */
+    public Map<String, Integer> getShardCounts(String indexName) throws IOException {
+        GetIndexResponse response = client.indices().get(new GetIndexRequest(indexName), RequestOptions.DEFAULT);
+        Map<String, Integer> shards = new TreeMap<>();
+        for (Map.Entry<String, Settings> entry : response.getSettings().entrySet()) {
+            shards.put(entry.getKey(), entry.getValue().getAsInt("index.number_of_shards", 1));
+        }
+        return shards;
+    }
+
+    /**
+     * 按_index聚合query在各个具体索引上匹配的文档数, query为null时统计全部文档
+     */
+    public Map<String, Long> countByIndex(String indexName, Object query, int indices) throws IOException {
+        JSONObject terms = new JSONObject(true);
+        terms.put("field", "_index");
+        terms.put("size", Math.max(indices, 1));
+        JSONObject json = aggregate(indexName, query, Collections.singletonMap("indices", Collections.singletonMap("terms", terms)), false);
+        Map<String, Long> counts = new TreeMap<>();
+        JSONArray buckets = json.getJSONObject("aggregations").getJSONObject("indices").getJSONArray("buckets");
+        for (int i = 0; i < buckets.size(); i++) {
+            JSONObject bucket = buckets.getJSONObject(i);
+            counts.put(bucket.getString("key"), bucket.getLongValue("doc_count"));
+        }
+        return counts;
+    }
+
+    /**
+     * 只做聚合不取文档的查询, 返回完整的响应; trackTotalHits为true时hits.total为精确的匹配数
+     */
+    public JSONObject aggregate(String indexName, Object query, Map<String, ?> aggregations, boolean trackTotalHits) throws IOException {
+        JSONObject body = new JSONObject(true);
+        body.put("size", 0);
+        body.put("track_total_hits", trackTotalHits);
+        if (query != null) {
+            body.put("query", query);
+        }
+        body.put("aggs", aggregations);
+        Request request = new Request("POST", "/" + indexName + "/_search");
+        request.setJsonEntity(body.toJSONString());
+        Response response = client.getLowLevelClient().performRequest(request);
+        return JSON.parseObject(EntityUtils.toString(response.getEntity(), StandardCharsets.UTF_8));
+    }
+
+    public EsMapping getMapping(String indexName) throws IOException {
+        GetIndexResponse response = client.indices().get(new GetIndexRequest(indexName), RequestOptions.DEFAULT);
+        return EsMapping.parse(response.getMappings());
+    }
+
+    /**
+     * 字段在索引中的最大排序值, 没有文档时返回null; millis为true时date_nanos按毫秒返回
+     */
+    public Object getMaxSortValue(String indexName, String field, boolean millis) throws IOException {
+        FieldSortBuilder sort = SortBuilders.fieldSort(field).order(SortOrder.DESC);
+        if (millis) {
+            sort.setNumericType("date");
+        }
+        SearchSourceBuilder source = new SearchSourceBuilder().size(1).fetchSource(false).trackTotalHits(false).sort(sort);
+        SearchResponse response = client.search(new SearchRequest(indexName).source(source), RequestOptions.DEFAULT);
+        SearchHit[] hits = response.getHits().getHits();
+        return hits.length == 0 ? null : hits[0].getSortValues()[0];
+    }
+
+    /**
+     * 打开Point-in-Time, 返回pit id
+     */
+    public String openPointInTime(String indexName, String keepAlive) throws IOException {
+        OpenPointInTimeRequest request = new OpenPointInTimeRequest(indexName.split(","))
+                .keepAlive(TimeValue.parseTimeValue(keepAlive, "keep_alive"));
+        String pitId = client.openPointInTime(request, RequestOptions.DEFAULT).getPointInTimeId();
+        log.info("open point in time for index[{}], keep_alive[{}]", indexName, keepAlive);
+        return pitId;
+    }
+
+    /**
+     * pit是否还有效, 有效时同时按keepAlive延长有效期
+     */
+    public boolean isPointInTimeAlive(String pitId, String keepAlive) {
+        if (StringUtils.isBlank(pitId)) {
+            return false;
+        }
+        SearchSourceBuilder source = new SearchSourceBuilder().size(0).trackTotalHits(false)
+                .pointInTimeBuilder(new PointInTimeBuilder(pitId).setKeepAlive(keepAlive));
+        try {
+            client.search(new SearchRequest().source(source), RequestOptions.DEFAULT);
+            return true;
+        } catch (Exception e) {
+            log.info("point in time is not alive: {}", e.getMessage());
+            return false;
+        }
+    }
+
+    /**
+     * 关闭Point-in-Time, 失败只记录日志, pit到期后服务端会自动释放
+     */
+    public void closePointInTime(String pitId) {
+        if (StringUtils.isBlank(pitId) || client == null) {
+            return;
+        }
+        try {
+            client.closePointInTime(new ClosePointInTimeRequest(pitId), RequestOptions.DEFAULT);
+        } catch (Exception e) {
+            log.warn("close point in time is error: {}", e.getMessage());
+        }
+    }
+
+    /**
+     * 释放共享的RestHighLevelClient客户端, 最后一个使用者释放时才真正关闭
      */
     public void closeRestHighLevelClient() {
-        if (client != null) {
+        synchronized (POOL) {
+            if (poolKey != null) {
+                release();
+            }
+            poolKey = null;
+            client = null;
+        }
+    }
+
+    private void release() {
+        SharedClient shared = POOL.get(poolKey);
+        if (shared != null && --shared.refs <= 0) {
+            POOL.remove(poolKey);
+            shared.close();
+        }
+    }
+
+    /**
+     * 客户端的连接参数, 作为共享的key的一部分
+     */
+    private static final class ClientOptions {
+        boolean discovery = false;
+        boolean multiThread = true;
+        int maxConnPerRoute = RestClientBuilder.DEFAULT_MAX_CONN_PER_ROUTE;
+        int maxConnTotal = RestClientBuilder.DEFAULT_MAX_CONN_TOTAL;
+        int sniffInterval = (int) SnifferBuilder.DEFAULT_SNIFF_INTERVAL;
+        boolean compression = false;
+
+        @Override
+        public String toString() {
+            return discovery + "|" + multiThread + "|" + maxConnPerRoute + "|" + maxConnTotal + "|" + sniffInterval + "|" + compression;
+        }
+    }
+
+    private static final class SharedClient {
+        final RestHighLevelClient client;
+        final Sniffer sniffer;
+        int refs = 0;
+
+        SharedClient(String endpoints, String username, String password, ClientOptions options) {
+            // RestClient在所有host之间轮询, 失败的节点会暂时摘除
+            HttpHost[] hosts = parseHosts(endpoints);
+            RestClientBuilder builder = RestClient.builder(hosts);
+            // 请求带上Accept-Encoding: gzip, 响应由RestClient解压
+            builder.setCompressionEnabled(options.compression);
+            final BasicCredentialsProvider credentialsProvider;
+            // 账号密码认证
+            if (StringUtils.isNotBlank(username) && StringUtils.isNotBlank(password)) {
+                credentialsProvider = new BasicCredentialsProvider();
+                credentialsProvider.setCredentials(AuthScope.ANY, new UsernamePasswordCredentials(username, password));
+            } else {
+                credentialsProvider = null;
+            }
+            builder.setHttpClientConfigCallback(f -> {
+                if (credentialsProvider != null) {
+                    f.setDefaultCredentialsProvider(credentialsProvider);
+                }
+                if (!options.multiThread) {
+                    f.setDefaultIOReactorConfig(IOReactorConfig.custom().setIoThreadCount(1).build());
+                }
+                return f.setMaxConnPerRoute(options.maxConnPerRoute).setMaxConnTotal(options.maxConnTotal);
+            });
+            SniffOnFailureListener failureListener = null;
+            if (options.discovery) {
+                failureListener = new SniffOnFailureListener();
+                builder.setFailureListener(failureListener);
+            }
+            this.client = new RestHighLevelClient(builder);
+            if (failureListener != null) {
+                // 嗅探到的节点地址不带scheme, 要和配置的endpoints一致, 否则https集群会按http连接
+                ElasticsearchNodesSniffer.Scheme scheme = "https".equalsIgnoreCase(hosts[0].getSchemeName())
+                        ? ElasticsearchNodesSniffer.Scheme.HTTPS : ElasticsearchNodesSniffer.Scheme.HTTP;
+                ElasticsearchNodesSniffer nodesSniffer = new ElasticsearchNodesSniffer(client.getLowLevelClient(),
+                        ElasticsearchNodesSniffer.DEFAULT_SNIFF_REQUEST_TIMEOUT, scheme);
+                this.sniffer = Sniffer.builder(client.getLowLevelClient())
+                        .setNodesSniffer(nodesSniffer)
+                        .setSniffIntervalMillis(options.sniffInterval)
+                        .build();
+                failureListener.setSniffer(sniffer);
+                log.info("sniff nodes of [{}] every {}ms", endpoints, options.sniffInterval);
+            } else {
+                this.sniffer = null;
+            }
+        }
+
+        void close() {
+            if (sniffer != null) {
+                sniffer.close();
+            }
             try {
                 client.close();
             } catch (IOException e) {
@@ -69,4 +378,130 @@ public class ESClient {
             }
         }
     }
+
+    /**
+     * 低层client返回的响应体: 响应按原样缓存时直接引用缓存的字节, 否则(如gzip解压)读出一份
+     */
+    static BytesReference responseBody(Response response) throws IOException {
+        HttpEntity entity = response.getEntity();
+        if (entity instanceof BufferedEntity) {
+            return ((BufferedEntity) entity).bytes();
+        }
+        return new BytesArray(EntityUtils.toByteArray(entity));
+    }
+
+    /**
+     * 和默认的HeapBufferedAsyncResponseConsumer一样把响应缓存在堆上, 同时统计读到的字节数(gzip解压之前);
+     * 缓存的数组直接作为响应体, 低层client解析时不用再复制一份
+     */
+    private static final class CountingResponseConsumer extends AbstractAsyncResponseConsumer<HttpResponse> {
+        private static final int BUFFER_LIMIT = 100 * 1024 * 1024;
+        private static final int INITIAL_SIZE = 4096;
+
+        private final AtomicLong counter;
+        private volatile HttpResponse response;
+        private volatile byte[] buffer;
+        private volatile int count;
+
+        CountingResponseConsumer(AtomicLong counter) {
+            this.counter = counter;
+        }
+
+        @Override
+        protected void onResponseReceived(HttpResponse response) {
+            this.response = response;
+        }
+
+        @Override
+        protected void onEntityEnclosed(HttpEntity entity, ContentType contentType) throws IOException {
+            long length = entity.getContentLength();
+            if (length > BUFFER_LIMIT) {
+                throw new ContentTooLongException("entity content is too long [" + length
+                        + "] for the configured buffer limit [" + BUFFER_LIMIT + "]");
+            }
+            buffer = new byte[length < 0 ? INITIAL_SIZE : (int) length];
+            count = 0;
+        }
+
+        @Override
+        protected void onContentReceived(ContentDecoder decoder, IOControl ioctrl) throws IOException {
+            byte[] buf = buffer;
+            int pos = count;
+            int read;
+            do {
+                if (pos == buf.length) {
+                    if (buf.length >= BUFFER_LIMIT) {
+                        throw new ContentTooLongException("entity content is too long for the configured buffer limit [" + BUFFER_LIMIT + "]");
+                    }
+                    buf = Arrays.copyOf(buf, (int) Math.min((long) buf.length * 2, BUFFER_LIMIT));
+                }
+                read = decoder.read(ByteBuffer.wrap(buf, pos, buf.length - pos));
+                if (read > 0) {
+                    pos += read;
+                    counter.addAndGet(read);
+                }
+            } while (read > 0);
+            buffer = buf;
+            count = pos;
+        }
+
+        @Override
+        protected HttpResponse buildResult(HttpContext context) {
+            HttpEntity entity = response.getEntity();
+            if (entity != null && buffer != null) {
+                response.setEntity(new BufferedEntity(entity, buffer, count));
+            }
+            return response;
+        }
+
+        @Override
+        protected void releaseResources() {
+            response = null;
+            buffer = null;
+        }
+    }
+
+    /**
+     * 堆上缓存的响应体, 保留原响应的Content-Type和Content-Encoding
+     */
+    private static final class BufferedEntity extends AbstractHttpEntity {
+        private final byte[] buffer;
+        private final int length;
+
+        BufferedEntity(HttpEntity original, byte[] buffer, int length) {
+            this.buffer = buffer;
+            this.length = length;
+            setContentType(original.getContentType());
+            setContentEncoding(original.getContentEncoding());
+        }
+
+        BytesReference bytes() {
+            return new BytesArray(buffer, 0, length);
+        }
+
+        @Override
+        public boolean isRepeatable() {
+            return true;
+        }
+
+        @Override
+        public long getContentLength() {
+            return length;
+        }
+
+        @Override
+        public InputStream getContent() {
+            return new ByteArrayInputStream(buffer, 0, length);
+        }
+
+        @Override
+        public void writeTo(OutputStream out) throws IOException {
+            out.write(buffer, 0, length);
+        }
+
+        @Override
+        public boolean isStreaming() {
+            return false;
+        }
+    }
 }
@@ -8,6 +8,8 @@ public enum ESReaderErrorCode implements ErrorCode {
     ES_INDEX_NOT_EXISTS("ESReader-02", "index不存在."),
     UNKNOWN_DATA_TYPE("ESReader-03", "无法识别的数据类型."),
     COLUMN_CANT_BE_EMPTY("ESReader-04", "column不能为空."),
+    PARSE_SOURCE_ERROR("ESReader-05", "解析_source出错."),
+    STATE_FILE_ERROR("ESReader-06", "读写本地状态文件出错."),
     ;
 
     private final String code;
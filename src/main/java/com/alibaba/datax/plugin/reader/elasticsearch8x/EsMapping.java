@@ -0,0 +1,187 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import org.elasticsearch.cluster.metadata.MappingMetadata;
+
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+/**
+ * 索引mapping按字段路径(用.连接)展开后的结果.
+ * job中从_mapping构建, 只把column用到的字段写进task配置
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class EsMapping {
+    private static final String TYPE = "type";
+    private static final String FORMAT = "format";
+    private static final String DOC_VALUES = "docValues";
+    private static final String CONFLICT = "conflict";
+
+    private final Map<String, FieldMapping> fields;
+
+    private EsMapping(Map<String, FieldMapping> fields) {
+        this.fields = fields;
+    }
+
+    /**
+     * 多个索引的mapping合并, 同一字段类型不一致时标记为冲突
+     */
+    @SuppressWarnings("unchecked")
+    public static EsMapping parse(Map<String, MappingMetadata> mappings) {
+        Map<String, FieldMapping> fields = new HashMap<>();
+        for (MappingMetadata metadata : mappings.values()) {
+            if (metadata == null) {
+                continue;
+            }
+            Object properties = metadata.sourceAsMap().get("properties");
+            if (properties instanceof Map) {
+                parseProperties(fields, "", (Map<String, Object>) properties);
+            }
+        }
+        return new EsMapping(fields);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static void parseProperties(Map<String, FieldMapping> fields, String prefix, Map<String, Object> properties) {
+        for (Map.Entry<String, Object> entry : properties.entrySet()) {
+            if (!(entry.getValue() instanceof Map)) {
+                continue;
+            }
+            String path = prefix + entry.getKey();
+            Map<String, Object> property = (Map<String, Object>) entry.getValue();
+            Object type = property.get(TYPE);
+            if (type == null) {
+                type = property.containsKey("properties") ? "object" : null;
+            }
+            Object docValues = property.get("doc_values");
+            FieldMapping field = new FieldMapping(type == null ? null : type.toString(),
+                    property.get(FORMAT) == null ? null : property.get(FORMAT).toString(),
+                    docValues == null ? hasDocValuesByDefault(type) : Boolean.parseBoolean(docValues.toString()),
+                    false);
+            merge(fields, path, field);
+            if (property.get("properties") instanceof Map) {
+                parseProperties(fields, path + ".", (Map<String, Object>) property.get("properties"));
+            }
+            if (property.get("fields") instanceof Map) {
+                parseProperties(fields, path + ".", (Map<String, Object>) property.get("fields"));
+            }
+        }
+    }
+
+    private static boolean hasDocValuesByDefault(Object type) {
+        return type != null && !"text".equals(type) && !"object".equals(type) && !"nested".equals(type)
+                && !"match_only_text".equals(type) && !"binary".equals(type);
+    }
+
+    private static void merge(Map<String, FieldMapping> fields, String path, FieldMapping field) {
+        FieldMapping old = fields.get(path);
+        if (old == null) {
+            fields.put(path, field);
+        } else if (!old.isConflict() && !(equals(old.type, field.type) && equals(old.format, field.format))) {
+            fields.put(path, new FieldMapping(old.type, old.format, old.docValues && field.docValues, true));
+        }
+    }
+
+    private static boolean equals(String a, String b) {
+        return a == null ? b == null : a.equals(b);
+    }
+
+    public FieldMapping get(String path) {
+        return path == null ? null : fields.get(path);
+    }
+
+    /**
+     * 字段本身或某一级父字段是否为nested类型
+     */
+    public boolean isUnderNested(String path) {
+        int dot = path.indexOf('.');
+        while (dot > 0) {
+            FieldMapping parent = fields.get(path.substring(0, dot));
+            if (parent != null && "nested".equals(parent.getType())) {
+                return true;
+            }
+            dot = path.indexOf('.', dot + 1);
+        }
+        FieldMapping field = fields.get(path);
+        return field != null && "nested".equals(field.getType());
+    }
+
+    /**
+     * 只保留给定路径及其父路径, 写入task配置
+     */
+    public Map<String, Object> toConfig(Collection<String> paths) {
+        Map<String, Object> config = new LinkedHashMap<>();
+        for (String path : paths) {
+            int dot = path.indexOf('.');
+            while (dot > 0) {
+                putConfig(config, path.substring(0, dot));
+                dot = path.indexOf('.', dot + 1);
+            }
+            putConfig(config, path);
+        }
+        return config;
+    }
+
+    private void putConfig(Map<String, Object> config, String path) {
+        FieldMapping field = fields.get(path);
+        if (field == null || config.containsKey(path)) {
+            return;
+        }
+        Map<String, Object> value = new HashMap<>();
+        value.put(TYPE, field.type);
+        value.put(FORMAT, field.format);
+        value.put(DOC_VALUES, field.docValues);
+        value.put(CONFLICT, field.conflict);
+        config.put(path, value);
+    }
+
+    @SuppressWarnings("unchecked")
+    public static EsMapping fromConfig(Map<String, Object> config) {
+        if (config == null || config.isEmpty()) {
+            return null;
+        }
+        Map<String, FieldMapping> fields = new HashMap<>();
+        for (Map.Entry<String, Object> entry : config.entrySet()) {
+            Map<String, Object> value = (Map<String, Object>) entry.getValue();
+            fields.put(entry.getKey(), new FieldMapping((String) value.get(TYPE), (String) value.get(FORMAT),
+                    Boolean.TRUE.equals(value.get(DOC_VALUES)), Boolean.TRUE.equals(value.get(CONFLICT))));
+        }
+        return new EsMapping(fields);
+    }
+
+    public static class FieldMapping {
+        private final String type;
+        private final String format;
+        private final boolean docValues;
+        private final boolean conflict;
+
+        FieldMapping(String type, String format, boolean docValues, boolean conflict) {
+            this.type = type;
+            this.format = format;
+            this.docValues = docValues;
+            this.conflict = conflict;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public String getFormat() {
+            return format;
+        }
+
+        public boolean hasDocValues() {
+            return docValues;
+        }
+
+        /**
+         * 多个索引中类型或格式不一致
+         */
+        public boolean isConflict() {
+            return conflict;
+        }
+    }
+}
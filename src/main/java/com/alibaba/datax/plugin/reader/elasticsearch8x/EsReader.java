@@ -8,37 +8,36 @@ import com.alibaba.datax.common.spi.Reader;
 import com.alibaba.datax.common.statistics.PerfRecord;
 import com.alibaba.datax.common.statistics.PerfTrace;
 import com.alibaba.datax.common.util.Configuration;
-import com.alibaba.datax.plugin.reader.elasticsearch8x.gson.MapTypeAdapter;
 import com.alibaba.fastjson.JSON;
-import com.google.common.collect.Lists;
-import com.google.gson.Gson;
-import com.google.gson.GsonBuilder;
+import com.alibaba.fastjson.JSONArray;
+import com.alibaba.fastjson.JSONObject;
 import io.searchbox.params.SearchType;
 import org.apache.commons.lang3.StringUtils;
-import org.apache.lucene.search.TotalHits;
-import org.elasticsearch.action.search.SearchRequest;
-import org.elasticsearch.action.search.SearchResponse;
-import org.elasticsearch.client.RequestOptions;
+import org.elasticsearch.common.bytes.BytesReference;
 import org.elasticsearch.common.settings.Settings;
-import org.elasticsearch.common.unit.TimeValue;
-import org.elasticsearch.common.xcontent.NamedXContentRegistry;
-import org.elasticsearch.common.xcontent.XContentFactory;
-import org.elasticsearch.common.xcontent.XContentParser;
-import org.elasticsearch.common.xcontent.XContentType;
+import org.elasticsearch.core.TimeValue;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeQueryBuilder;
 import org.elasticsearch.search.SearchHit;
 import org.elasticsearch.search.SearchModule;
 import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.slice.SliceBuilder;
+import org.elasticsearch.search.sort.SortOrder;
+import org.elasticsearch.xcontent.NamedXContentRegistry;
+import org.elasticsearch.xcontent.XContentFactory;
+import org.elasticsearch.xcontent.XContentParser;
+import org.elasticsearch.xcontent.XContentType;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.IOException;
-import java.lang.reflect.Array;
-import java.math.BigDecimal;
+import java.io.InterruptedIOException;
 import java.util.*;
+import java.util.concurrent.Semaphore;
 import java.util.concurrent.TimeUnit;
-
-import ognl.Ognl;
-import ognl.OgnlException;
+import java.util.function.Consumer;
 
 /**
  * @author yasy2025
@@ -49,7 +48,23 @@ public class EsReader extends Reader {
 
     public static class Job extends Reader.Job {
         private static final Logger log = LoggerFactory.getLogger(Job.class);
+        private static final String SEQ_NO = "_seq_no";
+        private static final List<String> INTEGRAL_TYPES = Arrays.asList("long", "integer", "short", "byte");
+        private static final List<String> RANGE_TYPES = Arrays.asList("long", "integer", "short", "byte",
+                "double", "float", "half_float", "scaled_float", "date", "date_nanos");
         private Configuration conf = null;
+        private ESClient esClient = null;
+        /**
+         * slice模式下每个具体索引一个pit
+         */
+        private final Map<String, String> pitIds = new LinkedHashMap<>();
+        private Map<String, Integer> shards = Collections.emptyMap();
+        private String checkpointDir = null;
+        private String jobKey = null;
+        private boolean finished = false;
+        private Watermark watermark = null;
+        private String splitFieldFormat = null;
+        private boolean splitFieldIntegral = false;
 
         @Override
         public void prepare() {
@@ -57,10 +72,8 @@ public class EsReader extends Reader {
              * 注意：此方法仅执行一次。
              * 最佳实践：如果 Job 中有需要进行数据同步之前的处理，可以在此处完成，如果没有必要则可以直接去掉。
              */
-            ESClient esClient = new ESClient();
-            esClient.createClient(Key.getEndpoints(conf),
-                    Key.getAccessID(conf),
-                    Key.getAccessKey(conf));
+            esClient = new ESClient();
+            esClient.createClient(conf);
 
             String indexName = Key.getIndexName(conf);
             String typeName = Key.getTypeName(conf);
@@ -73,34 +86,444 @@ public class EsReader extends Reader {
             } catch (Exception ex) {
                 throw DataXException.asDataXException(ESReaderErrorCode.ES_INDEX_NOT_EXISTS, ex.toString());
             }
-            esClient.closeRestHighLevelClient();
+
+            EsTable table = Key.getTable(conf);
+            if (table != null && table.getColumn() != null && !table.getColumn().isEmpty()) {
+                // 只把column用到的字段mapping传给task
+                try {
+                    EsMapping mapping = esClient.getMapping(indexName);
+                    conf.set(Key.MAPPING_KEY, mapping.toConfig(ColumnPlan.compile(table).getPaths()));
+                } catch (IOException ex) {
+                    log.warn("get mapping of index[{}] is error: {}", indexName, ex.getMessage());
+                }
+            }
+
+            String incrementalField = Key.getIncrementalField(conf);
+            if (StringUtils.isNotBlank(incrementalField)) {
+                prepareIncremental(indexName, incrementalField);
+            }
+
+            checkpointDir = Key.getCheckpointDir(conf);
+            if (StringUtils.isNotBlank(checkpointDir)) {
+                jobKey = Checkpoint.hash(Key.getEndpoints(conf), indexName, conf.getString(Key.SEARCH_KEY),
+                        conf.getString("table"), Key.getSplitMode(conf));
+                log.info("save checkpoint to [{}], job key:[{}]", checkpointDir, jobKey);
+            }
+
+            if (Key.isRangeSplit(conf)) {
+                checkSplitField(indexName);
+            }
+
+            try {
+                // 通配符、别名和data stream展开成具体索引, split时按索引拆分
+                shards = esClient.getShardCounts(indexName);
+                log.info("index [{}] resolved to {} indices", indexName, shards.size());
+            } catch (IOException ex) {
+                throw DataXException.asDataXException(ESReaderErrorCode.ES_SEARCH_ERROR, ex);
+            }
+        }
+
+        /**
+         * 确定本次增量读取的范围(上次的水位, 当前字段的最大值], 通过配置传给task
+         */
+        private void prepareIncremental(String indexName, String field) {
+            String stateDir = Key.getIncrementalStateDir(conf);
+            if (StringUtils.isBlank(stateDir)) {
+                throw DataXException.asDataXException(ESReaderErrorCode.BAD_CONFIG_VALUE, "配置了incrementalField时必须配置incrementalStateDir");
+            }
+            try {
+                String type;
+                if (SEQ_NO.equals(field)) {
+                    // _seq_no只在分片内递增
+                    if (esClient.getShardCount(indexName) > 1) {
+                        throw DataXException.asDataXException(ESReaderErrorCode.BAD_CONFIG_VALUE, "_seq_no只能用于单分片索引的增量读取");
+                    }
+                    type = "long";
+                } else {
+                    EsMapping.FieldMapping mapping = esClient.getMapping(indexName).get(field);
+                    if (mapping == null || mapping.isConflict() || !mapping.hasDocValues()) {
+                        throw DataXException.asDataXException(ESReaderErrorCode.BAD_CONFIG_VALUE,
+                                String.format("incrementalField[%s]不存在、类型不一致或者没有doc_values", field));
+                    }
+                    type = mapping.getType();
+                }
+                boolean date = "date".equals(type) || "date_nanos".equals(type);
+                watermark = Watermark.of(stateDir, Checkpoint.hash(Key.getEndpoints(conf), indexName,
+                        conf.getString(Key.SEARCH_KEY), field));
+                loadWatermark();
+                Object upper = watermark.getPending();
+                if (upper != null) {
+                    log.info("last incremental read did not finish, read up to its watermark [{}] again", upper);
+                } else {
+                    upper = esClient.getMaxSortValue(indexName, field, date);
+                }
+                Object lower = watermark.getValue();
+                log.info("incremental read of [{}]: ({}, {}]", field, lower, upper);
+                if (upper != null) {
+                    watermark.begin(upper);
+                }
+                conf.set(Key.INCREMENTAL_LOWER_KEY, lower);
+                conf.set(Key.INCREMENTAL_UPPER_KEY, upper);
+                if (date) {
+                    conf.set(Key.INCREMENTAL_FORMAT_KEY, "epoch_millis");
+                }
+            } catch (IOException ex) {
+                throw DataXException.asDataXException(ESReaderErrorCode.ES_SEARCH_ERROR, ex);
+            }
+        }
+
+        private void loadWatermark() {
+            try {
+                watermark.load();
+            } catch (Exception ex) {
+                throw DataXException.asDataXException(ESReaderErrorCode.STATE_FILE_ERROR, "读取增量水位失败", ex);
+            }
+        }
+
+        private void checkSplitField(String indexName) {
+            String field = Key.getSplitField(conf);
+            if (StringUtils.isBlank(field)) {
+                throw DataXException.asDataXException(ESReaderErrorCode.BAD_CONFIG_VALUE, "splitMode为range时必须配置splitField");
+            }
+            EsMapping.FieldMapping mapping;
+            try {
+                mapping = esClient.getMapping(indexName).get(field);
+            } catch (IOException ex) {
+                throw DataXException.asDataXException(ESReaderErrorCode.ES_SEARCH_ERROR, ex);
+            }
+            String type = mapping == null || mapping.isConflict() ? null : mapping.getType();
+            if (!RANGE_TYPES.contains(type)) {
+                throw DataXException.asDataXException(ESReaderErrorCode.BAD_CONFIG_VALUE,
+                        String.format("splitField[%s]需要是类型一致的数值或日期字段, 当前为%s", field, type));
+            }
+            boolean date = "date".equals(type) || "date_nanos".equals(type);
+            splitFieldFormat = date ? "epoch_millis" : null;
+            splitFieldIntegral = date || INTEGRAL_TYPES.contains(type);
+        }
+
+        /**
+         * 一个索引的所有slice共用一个pit; 重跑时如果上次的pit还有效就继续使用, 各个slice才能从保存的进度续读
+         */
+        private String pointInTime(String index) throws IOException {
+            String pitId = pitIds.get(index);
+            if (pitId != null) {
+                return pitId;
+            }
+            Checkpoint checkpoint = jobKey == null ? null : Checkpoint.of(checkpointDir, jobKey, "pit_" + index, jobKey);
+            if (checkpoint != null && checkpoint.load() && esClient.isPointInTimeAlive(checkpoint.getPitId(), Key.getPitKeepAlive(conf))) {
+                log.info("reuse point in time of index [{}] from last run", index);
+                pitId = checkpoint.getPitId();
+            } else {
+                pitId = esClient.openPointInTime(index, Key.getPitKeepAlive(conf));
+                if (checkpoint != null) {
+                    checkpoint.save(pitId, null, 0, 0, false);
+                }
+            }
+            pitIds.put(index, pitId);
+            return pitId;
         }
 
         @Override
         public void init() {
             this.conf = super.getPluginJobConf();
+            Object single = conf.get(Key.SEARCH_KEY);
+            if (single instanceof Map) {
+                // search可以配置成一个对象, 统一成只有一个元素的数组, 否则getList会把它转成字符串
+                conf.set(Key.SEARCH_KEY, Collections.singletonList(single));
+            }
+            List<Object> search = conf.getList(Key.SEARCH_KEY, Object.class);
+            if (search == null || search.isEmpty()) {
+                // 没有配置search时读取全部文档
+                log.info("search is empty, read all documents with match_all");
+                conf.set(Key.SEARCH_KEY, Collections.singletonList(Collections.emptyMap()));
+            }
+            if (!Key.isUsePit(conf)) {
+                checkSort();
+            }
+        }
+
+        /**
+         * 不使用pit时按search_after翻页, 每个search都要有排序结果唯一的sort, 否则会反复读取第一页
+         */
+        private void checkSort() {
+            for (Object item : conf.getList(Key.SEARCH_KEY, Object.class)) {
+                String query = JSON.toJSONString(item);
+                if (CompositePager.isComposite(query)) {
+                    continue;
+                }
+                Object sort = item instanceof Map ? ((Map<?, ?>) item).get("sort") : null;
+                if (sort == null || (sort instanceof Collection && ((Collection<?>) sort).isEmpty())) {
+                    throw DataXException.asDataXException(ESReaderErrorCode.BAD_CONFIG_VALUE,
+                            "usePit为false时search中必须配置sort, 且最后一个排序字段的值不能重复: " + query);
+                }
+            }
         }
 
         @Override
         public List<Configuration> split(int adviceNumber) {
             List<Configuration> configurations = new ArrayList<>();
             List<Object> search = conf.getList(Key.SEARCH_KEY, Object.class);
-            for (Object query : search) {
+            // 每个search分到的channel数
+            int perSearch = (adviceNumber + search.size() - 1) / search.size();
+            // 每个task同时读取splitConcurrency个单元, 单元数按channel数的倍数规划, task数不变
+            int concurrency = Key.getSplitConcurrency(conf);
+            boolean slice = Key.isSliceSplit(conf);
+            Map<Integer, Map<String, Long>> counts = new LinkedHashMap<>();
+            List<SplitPlanner.Unit> units = new ArrayList<>();
+            long total = 0;
+            for (int i = 0; i < search.size(); i++) {
+                String query = String.valueOf(search.get(i));
+                if (CompositePager.isComposite(query)) {
+                    splitComposite(configurations, i, search.get(i), compositePartitions(query, perSearch));
+                    continue;
+                }
+                if (Key.isRangeSplit(conf)) {
+                    List<SplitPlanner.Unit> ranges = rangeUnits(i, search.get(i), perSearch * concurrency);
+                    units.addAll(ranges);
+                    counts.put(i, Collections.emptyMap());
+                    for (SplitPlanner.Unit unit : ranges) {
+                        total += unit.docs;
+                    }
+                    continue;
+                }
+                Map<String, Long> docs = countDocs(search.get(i), slice);
+                counts.put(i, docs);
+                for (long count : docs.values()) {
+                    total += count;
+                }
+            }
+            if (counts.isEmpty()) {
+                return configurations;
+            }
+
+            long parts = (long) Math.max(adviceNumber, 1) * concurrency;
+            long target = Math.max(1, (total + parts - 1) / parts);
+            for (Map.Entry<Integer, Map<String, Long>> entry : counts.entrySet()) {
+                units.addAll(SplitPlanner.units(entry.getKey(), entry.getValue(), shards, target, slice));
+            }
+            if (units.isEmpty()) {
+                // 没有匹配的文档, 保留一个task正常结束
+                int first = counts.keySet().iterator().next();
+                units.add(new SplitPlanner.Unit(first, shards.isEmpty() ? Key.getIndexName(conf) : shards.keySet().iterator().next(), 0, 1, 0));
+            }
+            List<List<SplitPlanner.Unit>> tasks = SplitPlanner.pack(units, adviceNumber);
+            log.info("split {} docs of {} indices into {} units and {} tasks, adviceNumber:[{}]",
+                    total, shards.size(), units.size(), tasks.size(), adviceNumber);
+            try {
+                for (List<SplitPlanner.Unit> task : tasks) {
+                    long docs = 0;
+                    List<Map<String, Object>> unitConfigs = new ArrayList<>();
+                    for (SplitPlanner.Unit unit : task) {
+                        docs += unit.docs;
+                        unitConfigs.add(unitConfig(unit, search.get(unit.search), slice));
+                    }
+                    log.info("task {}: ~{} docs, units: {}", configurations.size(), docs, task);
+                    Configuration clone = conf.clone();
+                    clone.set(Key.SEARCH_KEY, search.get(task.get(0).search));
+                    clone.set(Key.UNITS_KEY, unitConfigs);
+                    if (jobKey != null) {
+                        clone.set(Key.CHECKPOINT_JOB_KEY, jobKey);
+                    }
+                    configurations.add(clone);
+                }
+            } catch (IOException ex) {
+                throw DataXException.asDataXException(ESReaderErrorCode.ES_SEARCH_ERROR, ex);
+            }
+            return configurations;
+        }
+
+        private Map<String, Object> unitConfig(SplitPlanner.Unit unit, Object search, boolean slice) throws IOException {
+            Map<String, Object> config = new LinkedHashMap<>();
+            config.put(Key.SEARCH_KEY, search);
+            config.put("index", unit.index);
+            config.put("split", Collections.singletonMap("id", unit.getSplitId()));
+            if (unit.range != null) {
+                config.put(Key.RANGE_KEY, unit.range);
+            }
+            if (slice) {
+                config.put(Key.PIT_ID_KEY, pointInTime(unit.index));
+                if (unit.sliceMax > 1) {
+                    Map<String, Object> sliceConfig = new LinkedHashMap<>();
+                    sliceConfig.put("id", unit.sliceId);
+                    sliceConfig.put("max", unit.sliceMax);
+                    config.put("slice", sliceConfig);
+                }
+            }
+            return config;
+        }
+
+        /**
+         * 用splitField的百分位数把search切成ranges个文档数接近的连续范围
+         */
+        private List<SplitPlanner.Unit> rangeUnits(int searchIndex, Object search, int ranges) {
+            String indexName = Key.getIndexName(conf);
+            String field = Key.getSplitField(conf);
+            Map<String, Object> aggregations = new LinkedHashMap<>();
+            aggregations.put("missing", Collections.singletonMap("missing", Collections.singletonMap("field", field)));
+            if (ranges > 1) {
+                List<Double> percents = new ArrayList<>();
+                for (int i = 1; i < ranges; i++) {
+                    percents.add(100.0 * i / ranges);
+                }
+                Map<String, Object> percentiles = new LinkedHashMap<>();
+                percentiles.put("field", field);
+                percentiles.put("percents", percents);
+                percentiles.put("keyed", false);
+                aggregations.put("cuts", Collections.singletonMap("percentiles", percentiles));
+            }
+            JSONObject response;
+            try {
+                response = esClient.aggregate(indexName, countQuery(search), aggregations, true);
+            } catch (IOException ex) {
+                throw DataXException.asDataXException(ESReaderErrorCode.ES_SEARCH_ERROR, ex);
+            }
+            long total = response.getJSONObject("hits").getJSONObject("total").getLongValue("value");
+            JSONObject result = response.getJSONObject("aggregations");
+            long missing = result.getJSONObject("missing").getLongValue("doc_count");
+            List<Double> percentileValues = new ArrayList<>();
+            JSONArray values = result.containsKey("cuts") ? result.getJSONObject("cuts").getJSONArray("values") : null;
+            for (int i = 0; values != null && i < values.size(); i++) {
+                percentileValues.add(values.getJSONObject(i).getDouble("value"));
+            }
+            List<Object> cuts = SplitPlanner.cuts(percentileValues, splitFieldIntegral);
+            if (total == 0) {
+                return Collections.emptyList();
+            }
+            List<SplitPlanner.Unit> units = SplitPlanner.ranges(searchIndex, indexName, field, splitFieldFormat, cuts, total, missing);
+            log.info("split search {} by [{}] at {}: {} docs, {} without the field", searchIndex, field, cuts, total, missing);
+            return units;
+        }
+
+        /**
+         * search在各个具体索引上匹配的文档数. 只有一个索引且不按slice拆分时不需要统计;
+         * 统计失败时按分片数估算
+         */
+        private Map<String, Long> countDocs(Object search, boolean slice) {
+            Map<String, Long> docs = new LinkedHashMap<>();
+            if (shards.size() == 1 && !slice) {
+                docs.put(shards.keySet().iterator().next(), 1L);
+                return docs;
+            }
+            try {
+                docs.putAll(esClient.countByIndex(Key.getIndexName(conf), countQuery(search), shards.size()));
+                return docs;
+            } catch (Exception ex) {
+                log.warn("count docs by index is error: {}, estimate by shards", ex.getMessage());
+            }
+            for (Map.Entry<String, Integer> entry : shards.entrySet()) {
+                docs.put(entry.getKey(), (long) entry.getValue());
+            }
+            return docs;
+        }
+
+        /**
+         * search的query, 增量读取时加上本次的范围
+         */
+        private Object countQuery(Object search) {
+            JSONObject body = JSON.parseObject(JSON.toJSONString(search));
+            Object query = body == null ? null : body.get("query");
+            Object upper = Key.getIncrementalUpper(conf);
+            if (upper == null) {
+                return query;
+            }
+            JSONObject bounds = new JSONObject(true);
+            bounds.put("lte", upper);
+            if (Key.getIncrementalLower(conf) != null) {
+                bounds.put("gt", Key.getIncrementalLower(conf));
+            }
+            if (Key.getIncrementalFormat(conf) != null) {
+                bounds.put("format", Key.getIncrementalFormat(conf));
+            }
+            JSONObject bool = new JSONObject(true);
+            bool.put("filter", Collections.singletonList(Collections.singletonMap("range",
+                    Collections.singletonMap(Key.getIncrementalField(conf), bounds))));
+            if (query != null) {
+                bool.put("must", Collections.singletonList(query));
+            }
+            return Collections.singletonMap("bool", bool);
+        }
+
+        /**
+         * composite聚合按第一个terms source的值分区, 字段类型不支持时不拆分
+         */
+        private int compositePartitions(String query, int perSearch) {
+            if (perSearch <= 1) {
+                return 1;
+            }
+            String field = CompositePager.getPartitionField(query);
+            if (field == null) {
+                log.info("first source of composite aggregation is not a terms on field, read it in one task");
+                return 1;
+            }
+            try {
+                EsMapping.FieldMapping mapping = esClient.getMapping(Key.getIndexName(conf)).get(field);
+                if (mapping == null || mapping.isConflict() || !CompositePager.PARTITION_TYPES.contains(mapping.getType())) {
+                    log.info("composite aggregation can not be partitioned by field [{}], read it in one task", field);
+                    return 1;
+                }
+            } catch (IOException ex) {
+                log.warn("get mapping of field [{}] is error: {}, read composite aggregation in one task", field, ex.getMessage());
+                return 1;
+            }
+            log.info("split composite aggregation by field [{}] into {} partitions", field, perSearch);
+            return perSearch;
+        }
+
+        private void splitComposite(List<Configuration> configurations, int searchIndex, Object search, int partitions) {
+            for (int partition = 0; partition < partitions; partition++) {
                 Configuration clone = conf.clone();
-                clone.set(Key.SEARCH_KEY, query);
+                clone.set(Key.SEARCH_KEY, search);
+                clone.set(Key.SPLIT_ID_KEY, searchIndex + "_" + partition + "_" + partitions);
+                clone.remove(Key.PIT_ID_KEY);
+                if (jobKey != null) {
+                    clone.set(Key.CHECKPOINT_JOB_KEY, jobKey);
+                }
+                if (partitions > 1) {
+                    clone.set(Key.SLICE_ID_KEY, partition);
+                    clone.set(Key.SLICE_MAX_KEY, partitions);
+                }
                 configurations.add(clone);
             }
-            return configurations;
         }
 
         @Override
         public void post() {
             super.post();
+            closePointInTime();
+            if (jobKey != null) {
+                Checkpoint.deleteAll(checkpointDir, jobKey);
+            }
+            if (watermark != null) {
+                try {
+                    watermark.commit();
+                } catch (IOException ex) {
+                    throw DataXException.asDataXException(ESReaderErrorCode.STATE_FILE_ERROR, "保存增量水位失败", ex);
+                }
+            }
+            finished = true;
         }
 
         @Override
         public void destroy() {
             log.info("============elasticsearch reader job destroy=================");
+            if (jobKey != null && !finished) {
+                // 失败时保留pit, 重跑时在有效期内可以续读
+                log.info("keep point in time for resuming");
+            } else {
+                closePointInTime();
+            }
+            if (esClient != null) {
+                esClient.closeRestHighLevelClient();
+            }
+        }
+
+        private void closePointInTime() {
+            if (esClient != null) {
+                for (String pitId : pitIds.values()) {
+                    esClient.closePointInTime(pitId);
+                }
+            }
+            pitIds.clear();
         }
     }
 
@@ -109,7 +532,27 @@ public class EsReader extends Reader {
 
         private Configuration conf;
         ESClient esClient = null;
-        Gson gson = null;
+        private ColumnPlan plan;
+        private SlotRow slotRow;
+        private RowFilter rowFilter;
+        private QueryBuilder pushdownQuery;
+        private SourceDecoder decoder;
+        private RowExpander expander;
+        private ReaderMetrics metrics;
+        private MemoryGovernor memory;
+        /**
+         * 下推后剩余的过滤表达式, 转换线程各自编译一份
+         */
+        private String residualFilter;
+        private int convertThreads;
+        private boolean convertOrdered;
+        private ConvertPool convertPool;
+        /**
+         * 不为null时不读_source, 有doc values的字段放在docvalue_fields里, 其余放在fields里
+         */
+        private List<String> docValueFields;
+        private List<String> fetchFields;
+        private boolean ignoreParseError;
         private String index;
         private String type;
         private SearchType searchType;
@@ -122,19 +565,41 @@ public class EsReader extends Reader {
         private int size;
         private boolean containsId;
         private long timeout;
+        private boolean usePit;
+        private String pitId;
+        private String pitKeepAlive;
+        private int sliceId;
+        private int sliceMax;
+        private int prefetch;
+        private boolean rawTransport;
+        private boolean composite;
+        private String incrementalField;
+        private Object incrementalLower;
+        private Object incrementalUpper;
+        private String incrementalFormat;
+        private Map<String, Object> splitRange;
+        private String splitId;
+        private String checkpointDir;
+        private String checkpointJobKey;
+        private int checkpointInterval;
+        private PageSizeController sizeController;
+        private RetryPolicy retryPolicy;
+        private RateLimiter rateLimiter;
+        private int splitConcurrency;
+        /**
+         * 正在转换的页所属的split
+         */
+        private SplitRead current;
 
         @Override
         public void prepare() {
-            esClient.createClient(Key.getEndpoints(conf),
-                    Key.getAccessID(conf),
-                    Key.getAccessKey(conf));
+            esClient.createClient(conf);
         }
 
         @Override
         public void init() {
             this.conf = super.getPluginJobConf();
             this.esClient = new ESClient();
-            this.gson = new GsonBuilder().registerTypeAdapterFactory(MapTypeAdapter.FACTORY).create();
             this.index = Key.getIndexName(conf);
             this.type = Key.getTypeName(conf);
             this.searchType = Key.getSearchType(conf);
@@ -147,93 +612,592 @@ public class EsReader extends Reader {
             this.containsId = Key.getContainsId(conf);
             this.timeout = Key.getTimeout(conf);
             this.table = Key.getTable(conf);
+            this.usePit = Key.isUsePit(conf);
+            this.pitId = Key.getPitId(conf);
+            this.pitKeepAlive = Key.getPitKeepAlive(conf);
+            this.sliceId = Key.getSliceId(conf);
+            this.sliceMax = Key.getSliceMax(conf);
+            this.prefetch = Key.getPrefetch(conf);
+            this.convertThreads = Key.getConvertThreads(conf);
+            this.convertOrdered = Key.isConvertOrdered(conf);
+            this.splitConcurrency = Key.getSplitConcurrency(conf);
+            this.rawTransport = Key.isRawTransport(conf);
+            this.composite = CompositePager.isComposite(query);
+            this.incrementalField = Key.getIncrementalField(conf);
+            this.incrementalLower = Key.getIncrementalLower(conf);
+            this.incrementalUpper = Key.getIncrementalUpper(conf);
+            this.incrementalFormat = Key.getIncrementalFormat(conf);
+            this.splitId = Key.getSplitId(conf);
+            this.checkpointDir = Key.getCheckpointDir(conf);
+            this.checkpointJobKey = Key.getCheckpointJobKey(conf);
+            this.checkpointInterval = Key.getCheckpointInterval(conf);
+            this.retryPolicy = new RetryPolicy(Key.getTrySize(conf), Key.getTryInterval(conf), Key.getMaxTryInterval(conf));
+            this.rateLimiter = new RateLimiter(Key.getRateLimit(conf), Key.isRateLimitPerDoc(conf));
+            if (Key.isAdaptiveSize(conf)) {
+                this.sizeController = new PageSizeController(size, Key.getMinSize(conf), Key.getMaxSize(conf),
+                        Key.getTargetPageBytes(conf), Key.getPageLatencyBudget(conf));
+            }
 
             if (table == null || table.getColumn() == null || table.getColumn().isEmpty()) {
                 throw DataXException.asDataXException(ESReaderErrorCode.COLUMN_CANT_BE_EMPTY, "请检查job的elasticsearchreader插件下parameter是否配置了table参数");
             }
+            // composite模式的column对应的是聚合结果, 不是索引字段
+            EsMapping mapping = composite ? null : Key.getMapping(conf);
+            this.plan = ColumnPlan.compile(table, Key.isTypedColumn(conf) ? mapping : null);
+            this.slotRow = new SlotRow(plan);
+            String filter = table.getFilter();
+            if (Key.isFilterPushdown(conf) && mapping != null && StringUtils.isNotBlank(filter)) {
+                FilterPushdown pushdown = FilterPushdown.analyze(filter, plan, mapping);
+                this.pushdownQuery = pushdown.getQuery();
+                filter = pushdown.getResidual();
+                if (pushdownQuery != null) {
+                    log.info("filter [{}] pushed down, residual filter: [{}]", table.getFilter(), filter);
+                }
+            }
+            this.residualFilter = filter;
+            this.rowFilter = RowFilter.compile(filter, slotRow.reset(new Object[plan.width()]));
+            this.decoder = new SourceDecoder(plan);
+            this.expander = new RowExpander(plan.width());
+            this.metrics = new ReaderMetrics(Key.getMetricsInterval(conf));
+            this.memory = new MemoryGovernor(Key.getMemoryBudget(conf), Key.getJvmMemoryBudget(conf));
+            metrics.setMemory(memory);
+            this.ignoreParseError = Key.isIgnoreParseError(conf);
+            String readMode = Key.getReadMode(conf);
+            if (!composite && !Key.READ_MODE_SOURCE.equals(readMode)) {
+                chooseReadFields(readMode, mapping);
+            }
+        }
+
+        private void chooseReadFields(String readMode, EsMapping mapping) {
+            boolean auto = Key.READ_MODE_AUTO.equals(readMode);
+            if (auto && mapping == null) {
+                log.info("readMode is auto but mapping is unknown, read _source");
+                return;
+            }
+            List<String> docValues = new ArrayList<>();
+            List<String> fetches = new ArrayList<>();
+            for (String path : plan.getPaths()) {
+                if (mapping == null) {
+                    docValues.add(path);
+                    continue;
+                }
+                if (mapping.isUnderNested(path)) {
+                    if (auto) {
+                        log.info("field [{}] is under nested, read _source", path);
+                        return;
+                    }
+                    throw DataXException.asDataXException(ESReaderErrorCode.BAD_CONFIG_VALUE, "readMode为docvalue时不支持nested字段:" + path);
+                }
+                EsMapping.FieldMapping field = mapping.get(path);
+                if (field != null && !field.isConflict() && field.hasDocValues()) {
+                    docValues.add(path);
+                } else if (auto) {
+                    log.info("field [{}] has no doc values, read _source", path);
+                    return;
+                } else {
+                    fetches.add(path);
+                }
+            }
+            this.docValueFields = docValues;
+            this.fetchFields = fetches;
+            log.info("read docvalue_fields {} and fields {} instead of _source", docValues, fetches);
         }
 
         @Override
         public void startRead(RecordSender recordSender) {
+            if (convertThreads > 0 && !composite) {
+                this.convertPool = new ConvertPool(convertThreads, convertOrdered, memory,
+                        () -> new Converter(recordSender), "es-convert-" + super.getTaskId());
+                log.info("convert hits with {} threads, ordered: {}", convertThreads, convertOrdered);
+            }
+            try {
+                readUnits(recordSender);
+            } finally {
+                if (convertPool != null) {
+                    convertPool.close();
+                    convertPool = null;
+                }
+            }
+            // 整个task的累计指标只在最后记录一次, 每个split的数据量在finishSplit中记录
+            PerfTrace.getInstance().addTaskDetails(super.getTaskId(), metrics.summary());
+            if (sizeController != null) {
+                PerfTrace.getInstance().addTaskDetails(super.getTaskId(), "sizes=" + sizeController.getTrajectory());
+            }
+        }
+
+        private void readUnits(RecordSender recordSender) {
+            List<Configuration> units = Key.getUnits(conf);
+            if (units.isEmpty()) {
+                readSplit(recordSender);
+                return;
+            }
+            if (splitConcurrency > 1 && units.size() > 1 && !composite) {
+                readConcurrently(recordSender, units);
+                return;
+            }
+            // 按顺序读取split分到的各个单元
+            for (Configuration unit : units) {
+                useUnit(unit);
+                readSplit(recordSender);
+            }
+        }
+
+        private void useUnit(Configuration unit) {
+            this.query = Key.getQuery(unit);
+            this.index = Key.getIndexName(unit);
+            this.splitId = Key.getSplitId(unit);
+            this.pitId = Key.getPitId(unit);
+            this.sliceId = Key.getSliceId(unit);
+            this.sliceMax = Key.getSliceMax(unit);
+            this.splitRange = Key.getSplitRange(unit);
+        }
+
+        /**
+         * 一个split(一个search在一个索引上的一个slice或range)的读取状态
+         */
+        private static final class SplitRead {
+            final String splitId;
+            final Checkpoint checkpoint;
+            final PerfRecord queryPerfRecord;
+            PerfRecord allResultPerfRecord;
+            SearchPager pager;
+            PagePrefetcher prefetcher;
+            long pages = 0;
+            /**
+             * 已发送的record数
+             */
+            long emitted = 0;
+            boolean completed = false;
+            /**
+             * 本split的hit数、响应字节数和等待翻页的时间, ReaderMetrics中是整个task的累计值
+             */
+            long hits = 0;
+            long responseBytes = 0;
+            long waitNanos = 0;
+            /**
+             * 打开时client累计的网络字节数, 同时读多个split时包含其他split的流量
+             */
+            final long wireBytesStart;
+
+            SplitRead(String splitId, Checkpoint checkpoint, PerfRecord queryPerfRecord, long wireBytesStart) {
+                this.splitId = splitId;
+                this.checkpoint = checkpoint;
+                this.queryPerfRecord = queryPerfRecord;
+                this.wireBytesStart = wireBytesStart;
+            }
+
+            void onPage(SearchPage page, long waitNanos) {
+                this.hits += page.size();
+                this.responseBytes += Math.max(page.getBytes(), 0);
+                this.waitNanos += waitNanos;
+            }
+        }
+
+        /**
+         * 按顺序读取一个split
+         */
+        private void readSplit(RecordSender recordSender) {
+            SplitRead split = openSplit(recordSender, null);
+            if (split == null) {
+                return;
+            }
+            try {
+                boolean more;
+                do {
+                    if (convertPool != null && !split.prefetcher.isReady()) {
+                        // 在途的批占着预留的内存, 不先发送的话预取可能一直等不到预算
+                        flushConverted(recordSender);
+                    }
+                    long waitStart = System.nanoTime();
+                    SearchPage page = split.prefetcher.take();
+                    more = onPage(recordSender, split, page, System.nanoTime() - waitStart);
+                } while (more);
+            } catch (IOException e) {
+                throw DataXException.asDataXException(ESReaderErrorCode.ES_SEARCH_ERROR, e);
+            } finally {
+                closeSplit(split);
+            }
+        }
+
+        /**
+         * 同时读取最多splitConcurrency个split: 每个split由自己的预取器异步翻页,
+         * 哪个split的页先到就先转换哪个, 所有split的record都交给同一个RecordSender.
+         * 等待时只有task线程阻塞, 不为每个split占用线程
+         */
+        private void readConcurrently(RecordSender recordSender, List<Configuration> units) {
+            Deque<Configuration> waiting = new ArrayDeque<>(units);
+            List<SplitRead> active = new ArrayList<>();
+            // 每放入一页(或读完、出错)释放一个许可, 许可数不少于可取的页数, 不会漏掉通知
+            final Semaphore ready = new Semaphore(0);
+            log.info("read {} splits with concurrency {}", units.size(), splitConcurrency);
+            try {
+                long waitNanos = 0;
+                while (!waiting.isEmpty() || !active.isEmpty()) {
+                    while (active.size() < splitConcurrency && !waiting.isEmpty()) {
+                        useUnit(waiting.poll());
+                        SplitRead split = openSplit(recordSender, ready::release);
+                        if (split != null) {
+                            active.add(split);
+                        }
+                    }
+                    boolean progressed = false;
+                    for (Iterator<SplitRead> it = active.iterator(); it.hasNext(); ) {
+                        SplitRead split = it.next();
+                        if (!split.prefetcher.isReady()) {
+                            continue;
+                        }
+                        progressed = true;
+                        if (!onPage(recordSender, split, split.prefetcher.take(), waitNanos)) {
+                            it.remove();
+                            closeSplit(split);
+                        }
+                        waitNanos = 0;
+                    }
+                    if (!progressed && !active.isEmpty()) {
+                        flushConverted(recordSender);
+                        long waitStart = System.nanoTime();
+                        ready.acquire();
+                        waitNanos += System.nanoTime() - waitStart;
+                    }
+                }
+            } catch (IOException e) {
+                throw DataXException.asDataXException(ESReaderErrorCode.ES_SEARCH_ERROR, e);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw DataXException.asDataXException(ESReaderErrorCode.ES_SEARCH_ERROR, "interrupted while waiting for search pages", e);
+            } finally {
+                for (SplitRead split : active) {
+                    closeSplit(split);
+                }
+            }
+        }
+
+        /**
+         * 按当前单元的配置构造查询并开始翻页; 不需要读取时返回null, composite聚合在这里同步读完后返回null
+         *
+         * @param listener 不为null时预取器每放入一页回调一次
+         */
+        private SplitRead openSplit(RecordSender recordSender, Runnable listener) {
             PerfTrace.getInstance().addTaskDetails(super.getTaskId(), index);
             //search
-            PerfRecord queryPerfRecord = new PerfRecord(super.getTaskGroupId(), super.getTaskId(), PerfRecord.PHASE.SQL_QUERY);
-            SearchRequest searchRequest = new SearchRequest(index);
             SearchSourceBuilder sourceBuilder = jsonToSearchSourceBuilder(query);
-            sourceBuilder.trackTotalHits(true);
-            sourceBuilder.fetchSource(includes, excludes);
+            if (docValueFields == null) {
+                sourceBuilder.fetchSource(includes, excludes);
+            } else {
+                sourceBuilder.fetchSource(false);
+                for (String field : docValueFields) {
+                    sourceBuilder.docValueField(field);
+                }
+                for (String field : fetchFields) {
+                    sourceBuilder.fetchField(field);
+                }
+            }
             sourceBuilder.size(size);
             sourceBuilder.timeout(new TimeValue(timeout, TimeUnit.MILLISECONDS));
-            // 使用searchAfter需要指定排序规则
-            searchRequest.searchType(searchType.toString());
-            searchRequest.source(sourceBuilder);
+            if (pushdownQuery != null) {
+                addFilter(sourceBuilder, pushdownQuery);
+            }
+            if (splitRange != null) {
+                addFilter(sourceBuilder, splitRangeQuery());
+            }
+            if (StringUtils.isNotBlank(incrementalField)) {
+                if (incrementalUpper == null) {
+                    log.info("no document has [{}], nothing to read", incrementalField);
+                    return null;
+                }
+                addIncrementalRange(sourceBuilder);
+            }
+            Checkpoint checkpoint = null;
+            if (StringUtils.isNotBlank(checkpointDir) && checkpointJobKey != null) {
+                checkpoint = Checkpoint.of(checkpointDir, checkpointJobKey, splitId,
+                        Checkpoint.hash(checkpointJobKey, query, index, String.valueOf(sliceId), String.valueOf(sliceMax),
+                                splitRange == null ? null : JSON.toJSONString(splitRange)));
+                if (checkpoint.load() && checkpoint.isFinished()) {
+                    log.info("split [{}] already finished with {} docs, skip", splitId, checkpoint.getDocs());
+                    return null;
+                }
+            }
+            SplitRead split = new SplitRead(splitId, checkpoint,
+                    new PerfRecord(super.getTaskGroupId(), super.getTaskId(), PerfRecord.PHASE.SQL_QUERY), esClient.getWireBytes());
+            if (composite) {
+                readComposite(recordSender, sourceBuilder, split);
+                return null;
+            }
+            if (sliceMax > 1) {
+                sourceBuilder.slice(new SliceBuilder(sliceId, sliceMax));
+                log.info("read slice:[{}/{}]", sliceId, sliceMax);
+            }
 
-            SearchResponse searchResponse;
+            String searchPitId = pitId;
+            Object[] resumeAfter = null;
+            if (checkpoint != null && checkpoint.getSortValues() != null) {
+                if (checkpoint.getPitId() == null ? !usePit : esClient.isPointInTimeAlive(checkpoint.getPitId(), pitKeepAlive)) {
+                    searchPitId = checkpoint.getPitId();
+                    resumeAfter = checkpoint.getSortValues();
+                    split.pages = checkpoint.getPages();
+                    split.emitted = checkpoint.getDocs();
+                    log.info("resume split [{}] from page {} after {}, {} docs already sent", splitId, split.pages, Arrays.toString(resumeAfter), split.emitted);
+                } else {
+                    log.warn("point in time of split [{}] expired, read from the beginning", splitId);
+                }
+            }
+            // job在split阶段为每个索引只打开一个pit, 排在后面的split开始时它可能已经超过pitKeepAlive过期了,
+            // 这时由split自己打开一个新的pit, 读完后关闭
+            if (resumeAfter == null && searchPitId != null && !esClient.isPointInTimeAlive(searchPitId, pitKeepAlive)) {
+                log.warn("point in time of index [{}] expired before split [{}] started, open a new one for it", index, splitId);
+                searchPitId = null;
+            }
 
-            queryPerfRecord.start();
-            Object[] sortValues = null;
+            split.pager = newPager(sourceBuilder, searchPitId);
+            split.pager.setSizeController(sizeController);
+            // 并发读取时必须异步预取, 才能在等待一个split时处理其他split的页
+            split.prefetcher = new PagePrefetcher(split.pager, listener == null ? prefetch : Math.max(prefetch, 1), retryPolicy, rateLimiter, memory);
+            split.prefetcher.setListener(listener);
             try {
-                searchResponse = esClient.getClient().search(searchRequest, RequestOptions.DEFAULT);
-                TotalHits totalHits = searchResponse.getHits().getTotalHits();
-                int total = (int) totalHits.value;
-                log.info("search total：{}, size: {} ", total, sourceBuilder.size());
-                if (total == 0) {
-                    return;
+                split.pager.open();
+                if (resumeAfter != null) {
+                    // 自己打开的pit续读完后由自己关闭, job共享的pit由job关闭
+                    split.pager.resume(resumeAfter, pitId == null);
                 }
-                SearchHit[] searchHits = searchResponse.getHits().getHits();
+                // SQL_QUERY记录打开pit到第一页返回, RESULT_NEXT_ALL记录之后等待翻页的时间
+                split.queryPerfRecord.start();
+                split.prefetcher.start();
+            } catch (IOException e) {
+                closeSplit(split);
+                throw DataXException.asDataXException(ESReaderErrorCode.ES_SEARCH_ERROR, e);
+            }
+            return split;
+        }
 
-                queryPerfRecord.start();
-                this.transportRecords(recordSender, searchHits);
-                queryPerfRecord.end();
+        /**
+         * 创建split的翻页器, 包内可见以便测试替换
+         */
+        SearchPager newPager(SearchSourceBuilder sourceBuilder, String searchPitId) {
+            return new SearchPager(esClient, index, sourceBuilder, searchType.toString(), usePit, searchPitId, pitKeepAlive, rawTransport);
+        }
 
-                if (total <= sourceBuilder.size()) {
-                    return;
+        /**
+         * 处理split的一页, 返回false表示split已经读完
+         */
+        private boolean onPage(RecordSender recordSender, SplitRead split, SearchPage page, long waitNanos) {
+            if (split.allResultPerfRecord == null) {
+                split.queryPerfRecord.end();
+                if (page != null) {
+                    metrics.onPage(page, 0);
+                    split.onPage(page, 0);
+                    log.info("search total：{}, size: {} ", page.getTotalHits(), split.pager.getPageSize());
                 }
-
-                SearchHit last = searchHits[searchHits.length - 1];
-                sortValues = last.getSortValues();
-                log.info("??????????searchAfter is：{} ", Arrays.toString(sortValues));
-            } catch (Exception e) {
+                split.allResultPerfRecord = new PerfRecord(super.getTaskGroupId(), super.getTaskId(), PerfRecord.PHASE.RESULT_NEXT_ALL);
+                split.allResultPerfRecord.start();
+            } else if (page != null) {
+                metrics.onPage(page, waitNanos);
+                split.onPage(page, waitNanos);
+            }
+            if (page == null || page.size() == 0) {
+                if (page != null) {
+                    memory.release(page.takeReserved());
+                }
+                finishSplit(recordSender, split);
+                return false;
+            }
+            // 转换当前页时下一页已经在下载
+            current = split;
+            try {
+                this.transportPage(recordSender, page);
+            } catch (IOException e) {
                 throw DataXException.asDataXException(ESReaderErrorCode.ES_SEARCH_ERROR, e);
+            } finally {
+                current = null;
+                // 并行转换时页的内存已经转给各批, 这里为0
+                memory.release(page.takeReserved());
+            }
+            split.pages++;
+            if (split.checkpoint != null && split.pages % checkpointInterval == 0) {
+                saveCheckpoint(recordSender, split, split.pager.getPitId(), page.getSortValues(), false);
+            }
+            if (metrics.shouldReport()) {
+                log.info("split [{}] metrics: {}", split.splitId, metrics.summary());
             }
-            queryPerfRecord.end();
+            return true;
+        }
+
+        private void finishSplit(RecordSender recordSender, SplitRead split) {
+            flushConverted(recordSender);
+            split.allResultPerfRecord.end(split.waitNanos);
+            split.allResultPerfRecord.addCount(split.hits);
+            split.allResultPerfRecord.addSize(split.responseBytes);
+            split.completed = true;
+            if (split.checkpoint != null) {
+                saveCheckpoint(recordSender, split, split.pager.getPitId(), split.pager.getSortValues(), true);
+            }
+            long hits = split.hits;
+            long wireBytes = esClient.getWireBytes() - split.wireBytesStart;
+            log.info("read {} hits, {} bytes on wire, {} bytes/hit", hits, wireBytes, hits == 0 ? 0 : wireBytes / hits);
+            log.info("split [{}] metrics: {}", split.splitId, metrics.summary());
+            PerfTrace.getInstance().addTaskDetails(super.getTaskId(), String.format("split=%s hits=%d wireBytes=%d", split.splitId, hits, wireBytes));
+            if (sizeController != null) {
+                log.info("page size trajectory(page:size): {}", sizeController.getTrajectory());
+            }
+        }
 
+        private void closeSplit(SplitRead split) {
+            if (split.checkpoint != null && !split.completed) {
+                // 保留pit, 重跑时从保存的进度续读
+                split.pager.detach();
+            }
+            split.prefetcher.close();
+        }
+
+        private static void addFilter(SearchSourceBuilder sourceBuilder, QueryBuilder filter) {
+            BoolQueryBuilder bool = QueryBuilders.boolQuery().filter(filter);
+            if (sourceBuilder.query() != null) {
+                bool.must(sourceBuilder.query());
+            }
+            sourceBuilder.query(bool);
+        }
+
+        /**
+         * range模式分到的范围
+         */
+        private QueryBuilder splitRangeQuery() {
+            String field = (String) splitRange.get("field");
+            if (Boolean.TRUE.equals(splitRange.get("missing"))) {
+                return QueryBuilders.boolQuery().mustNot(QueryBuilders.existsQuery(field));
+            }
+            RangeQueryBuilder range = QueryBuilders.rangeQuery(field);
+            if (splitRange.get("gte") != null) {
+                range.gte(splitRange.get("gte"));
+            }
+            if (splitRange.get("lt") != null) {
+                range.lt(splitRange.get("lt"));
+            }
+            if (splitRange.get("format") != null) {
+                range.format((String) splitRange.get("format"));
+            }
+            log.info("read range [{}, {}) of [{}]", splitRange.get("gte"), splitRange.get("lt"), field);
+            return range;
+        }
+
+        /**
+         * 只读取(上次的水位, 本次的上界]之间的文档, 没有指定排序时按增量字段排序
+         */
+        private void addIncrementalRange(SearchSourceBuilder sourceBuilder) {
+            RangeQueryBuilder range = QueryBuilders.rangeQuery(incrementalField).lte(incrementalUpper);
+            if (incrementalLower != null) {
+                range.gt(incrementalLower);
+            }
+            if (incrementalFormat != null) {
+                range.format(incrementalFormat);
+            }
+            addFilter(sourceBuilder, range);
+            if (!composite && (sourceBuilder.sorts() == null || sourceBuilder.sorts().isEmpty())) {
+                sourceBuilder.sort(incrementalField, SortOrder.ASC);
+            }
+            log.info("incremental read of [{}]: ({}, {}]", incrementalField, incrementalLower, incrementalUpper);
+        }
+
+        /**
+         * 按after_key翻页读取composite聚合, 每个bucket作为一条文档转换; slice.id/slice.max表示key的分区
+         */
+        private void readComposite(RecordSender recordSender, SearchSourceBuilder sourceBuilder, SplitRead split) {
+            Checkpoint checkpoint = split.checkpoint;
+            CompositePager pager = new CompositePager(esClient, index, sourceBuilder, searchType.toString());
+            if (sliceMax > 1) {
+                pager.partition(CompositePager.getPartitionField(query), sliceId, sliceMax);
+            }
+            if (checkpoint != null && checkpoint.getSortValues() != null) {
+                pager.resume(checkpoint.getSortValues());
+                split.pages = checkpoint.getPages();
+                split.emitted = checkpoint.getDocs();
+                log.info("resume split [{}] from page {} after {}, {} records already sent", splitId, split.pages,
+                        Arrays.toString(checkpoint.getSortValues()), split.emitted);
+            }
+            split.queryPerfRecord.start();
+            long buckets = 0;
+            current = split;
             try {
-                while (true) {
-                    // 使用searchAfter循环
-                    queryPerfRecord.start();
-                    log.info("searchAfter is：{} ", Arrays.toString(sortValues));
-                    sourceBuilder.searchAfter(sortValues);
-                    searchResponse = esClient.getClient().search(searchRequest, RequestOptions.DEFAULT);
-                    SearchHit[] searchHits = searchResponse.getHits().getHits();
-                    queryPerfRecord.end();
-
-                    queryPerfRecord.start();
-                    this.transportRecords(recordSender, searchHits);
-                    queryPerfRecord.end();
-
-                    if (searchHits.length == 0) {
-                        break;
+                while (pager.hasNext()) {
+                    long waitStart = System.nanoTime();
+                    List<Map<String, Object>> page = nextBuckets(pager);
+                    if (buckets == 0) {
+                        split.queryPerfRecord.end();
+                    }
+                    metrics.onBuckets(page.size(), System.nanoTime() - waitStart);
+                    for (Map<String, Object> bucket : page) {
+                        long start = System.nanoTime();
+                        SourceFrame frame = decoder.decode(BytesReference.bytes(XContentFactory.jsonBuilder().map(bucket)));
+                        metrics.onDecode(System.nanoTime() - start);
+                        transportFrame(recordSender, frame);
                     }
-                    // 重新复值searchAfter
-                    SearchHit last = searchHits[searchHits.length - 1];
-                    sortValues = last.getSortValues();
+                    buckets += page.size();
+                    split.pages++;
+                    if (checkpoint != null && split.pages % checkpointInterval == 0) {
+                        saveCheckpoint(recordSender, split, null, pager.getAfterValues(), false);
+                    }
+                    if (metrics.shouldReport()) {
+                        log.info("split [{}] metrics: {}", splitId, metrics.summary());
+                    }
+                }
+                if (checkpoint != null) {
+                    saveCheckpoint(recordSender, split, null, pager.getAfterValues(), true);
                 }
             } catch (IOException e) {
                 throw DataXException.asDataXException(ESReaderErrorCode.ES_SEARCH_ERROR, e);
+            } finally {
+                current = null;
             }
+            log.info("read {} buckets in {} pages", buckets, split.pages);
+            log.info("split [{}] metrics: {}", splitId, metrics.summary());
+            PerfTrace.getInstance().addTaskDetails(super.getTaskId(), String.format("split=%s buckets=%d", splitId, buckets));
         }
 
-        private void setDefaultValue(List<EsField> column, Map<String, Object> data) {
-            for (EsField field : column) {
-                if (field.hasChild()) {
-                    setDefaultValue(field.getChild(), data);
-                } else {
-                    data.putIfAbsent(field.getFinalName(table.getNameCase()), null);
+        private List<Map<String, Object>> nextBuckets(CompositePager pager) throws IOException {
+            for (int attempt = 1; ; attempt++) {
+                try {
+                    sleep(rateLimiter.reserve(1));
+                    List<Map<String, Object>> page = pager.next();
+                    rateLimiter.onSuccess();
+                    return page;
+                } catch (IOException e) {
+                    if (!retryPolicy.shouldRetry(e, attempt)) {
+                        throw e;
+                    }
+                    if (RetryPolicy.isThrottled(e)) {
+                        rateLimiter.onThrottled();
+                    }
+                    long delay = retryPolicy.delayMillis(e, attempt);
+                    log.warn("composite search failed (attempt {}/{}), retry in {}ms: {}",
+                            attempt, retryPolicy.getMaxTries(), delay, e.getMessage());
+                    sleep(delay);
                 }
             }
         }
 
+        private void sleep(long millis) throws IOException {
+            if (millis <= 0) {
+                return;
+            }
+            try {
+                Thread.sleep(millis);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting to search");
+            }
+        }
+
+        /**
+         * 保存split的进度. 进度中的文档数要和已交给writer的一致: 先发送转换中的批,
+         * 再把recordSender缓冲中的记录推给channel, 否则失败重跑会把还没发出的记录当作已读完
+         */
+        private void saveCheckpoint(RecordSender recordSender, SplitRead split, String currentPitId, Object[] sortValues, boolean finished) {
+            flushConverted(recordSender);
+            recordSender.flush();
+            try {
+                split.checkpoint.save(currentPitId, sortValues, split.emitted, split.pages, finished);
+            } catch (IOException e) {
+                log.warn("save checkpoint of split [{}] is error: {}", split.splitId, e.getMessage());
+            }
+        }
 
         private SearchSourceBuilder jsonToSearchSourceBuilder(String query) {
             SearchSourceBuilder searchSourceBuilder = new SearchSourceBuilder();
@@ -249,183 +1213,291 @@ public class EsReader extends Reader {
             return searchSourceBuilder;
         }
 
-        private void getPathSource(List<Map<String, Object>> result, Map<String, Object> source, List<EsField> column, Map<String, Object> parent) {
-            if (source.isEmpty()) {
+        /**
+         * 把文档展开成行逐行交给consumer, 数组字段的每个元素各一行, 多个数组之间做笛卡尔积; 行数组会被复用.
+         * 返回生成的行数
+         */
+        int getPathSource(SourceFrame source, RowExpander.RowConsumer consumer) {
+            return expander.expand(source, consumer);
+        }
+
+        boolean filter(Object[] row) {
+            return filter(row, slotRow, rowFilter);
+        }
+
+        private boolean filter(Object[] row, SlotRow slotRow, RowFilter rowFilter) {
+            if (plan.getDeleteSlot() >= 0) {
+                row[plan.getDeleteSlot()] = null;
+            }
+            return rowFilter == null || rowFilter.accept(slotRow.reset(row));
+        }
+
+        private void transportPage(final RecordSender recordSender, SearchPage page) throws IOException {
+            if (convertPool != null) {
+                convertPage(recordSender, page);
                 return;
             }
-            for (EsField esField : column) {
-                if (!esField.hasChild()) {
-                    parent.put(esField.getFinalName(table.getNameCase()), source.getOrDefault(esField.getName(), esField.getValue()));
-                }
+            if (!page.isRaw()) {
+                transportRecords(recordSender, page.getHits());
+                return;
             }
-            for (EsField esField : column) {
-                if (!esField.hasChild()) {
-                    continue;
+            HitStreamReader.read(page.getBody(), decoder, docValueFields != null, new HitStreamReader.HitConsumer() {
+                // 上一条处理完的时间, 到这一条回调之间即为解析耗时
+                private long mark = System.nanoTime();
+
+                @Override
+                public void accept(String id, SourceFrame frame) {
+                    metrics.onDecode(System.nanoTime() - mark);
+                    transportFrame(recordSender, frame);
+                    mark = System.nanoTime();
+                }
+
+                @Override
+                public void onParseError(String id, IOException e) {
+                    parseError(id, e);
+                    mark = System.nanoTime();
                 }
-                Object value = source.get(esField.getName());
-                if (value instanceof Map) {
-                    getPathSource(result, (Map<String, Object>) value, esField.getChild(), parent);
-                } else if (value instanceof List) {
-                    List<Map<String, Object>> valueList = (List<Map<String, Object>>) value;
-                    if (valueList.isEmpty()) {
-                        continue;
+            });
+        }
+
+        /**
+         * 把一页hit分批交给转换线程, 已转换完的批在task线程中发送
+         */
+        private void convertPage(final RecordSender recordSender, SearchPage page) throws IOException {
+            final Consumer<ConvertPool.Batch> sink = batch -> drain(recordSender, batch);
+            final int batchSize = convertPool.batchSize(page.size());
+            final List<Object> hits = new ArrayList<>(batchSize);
+            // 页预留的内存按hit数分给各批, 每批发送完后释放, 余数归最后一批
+            final long reserved = page.takeReserved();
+            final long perHit = reserved / page.size();
+            final long[] assigned = {0};
+            if (!page.isRaw()) {
+                for (SearchHit hit : page.getHits()) {
+                    hits.add(hit);
+                    if (hits.size() == batchSize) {
+                        assigned[0] += perHit * hits.size();
+                        convertPool.submit(hits, current, perHit * hits.size(), sink);
+                        hits.clear();
                     }
-                    List<Map<String, Object>> joinResults = new ArrayList<>();
-                    ArrayList<Map<String, Object>> copyResult = new ArrayList<>(result);
-                    result.clear();
-                    for (Map<String, Object> joinParent : copyResult) {
-                        for (Map<String, Object> item : valueList) {
-                            HashMap<String, Object> childData = new LinkedHashMap<>(joinParent);
-                            joinResults.add(childData);
-                            getPathSource(joinResults, item, esField.getChild(), childData);
-                            result.addAll(joinResults);
-                            joinResults.clear();
+                }
+            } else {
+                // 流式解析只能在task线程中顺序进行, 解析好的frame交给转换线程展开和生成Record
+                HitStreamReader.read(page.getBody(), decoder, docValueFields != null, new HitStreamReader.HitConsumer() {
+                    private long mark = System.nanoTime();
+
+                    @Override
+                    public void accept(String id, SourceFrame frame) {
+                        metrics.onDecode(System.nanoTime() - mark);
+                        hits.add(frame);
+                        if (hits.size() == batchSize) {
+                            assigned[0] += perHit * hits.size();
+                            convertPool.submit(hits, current, perHit * hits.size(), sink);
+                            hits.clear();
                         }
+                        mark = System.nanoTime();
                     }
-                    copyResult.clear();
-                }
+
+                    @Override
+                    public void onParseError(String id, IOException e) {
+                        parseError(id, e);
+                        mark = System.nanoTime();
+                    }
+                });
+            }
+            if (!hits.isEmpty()) {
+                convertPool.submit(hits, current, reserved - assigned[0], sink);
+            } else {
+                memory.release(reserved - assigned[0]);
             }
         }
 
-        private Object getOgnlValue(Object expression, Map<String, Object> root, Object defaultValue) {
-            try {
-                if (!(expression instanceof String)) {
-                    return defaultValue;
-                }
-                Object value = Ognl.getValue(expression.toString(), root);
-                if (value == null) {
-                    return defaultValue;
-                }
-                return value;
-            } catch (OgnlException e) {
-                return defaultValue;
+        private void flushConverted(RecordSender recordSender) {
+            if (convertPool != null) {
+                convertPool.flush(batch -> drain(recordSender, batch));
             }
         }
 
-        private boolean filter(String filter, String deleteFilterKey, Map<String, Object> record) {
-            if (StringUtils.isNotBlank(deleteFilterKey)) {
-                record.remove(deleteFilterKey);
+        /**
+         * 在task线程中处理一批转换结果: 解析错误、指标、脏数据和发送
+         */
+        private void drain(RecordSender recordSender, ConvertPool.Batch batch) {
+            for (int i = 0; i < batch.errors.size(); i++) {
+                parseError(batch.errorIds.get(i), batch.errors.get(i));
             }
-            if (StringUtils.isBlank(filter)) {
-                return true;
+            for (int i = 0; i < batch.docs; i++) {
+                if (batch.decodeNanos[i] >= 0) {
+                    metrics.onDecode(batch.decodeNanos[i]);
+                }
+                metrics.onDocument(batch.fanOut[i]);
             }
-            return (Boolean) getOgnlValue(filter, record, Boolean.TRUE);
-        }
-
-        private boolean transportRecords(RecordSender recordSender, SearchHit[] searchHits) {
-            if (searchHits == null && searchHits.length == 0) {
-                return false;
+            for (int i = 0; i < batch.rejected; i++) {
+                metrics.onRejected();
             }
-            List<String> sources = Lists.newArrayList();
-            for (SearchHit hit : searchHits) {
-                sources.add(hit.getSourceAsString());
+            for (int i = 0; i < batch.records.size(); i++) {
+                Record record = batch.records.get(i);
+                String dirty = batch.dirty.get(i);
+                if (dirty != null) {
+                    getTaskPluginCollector().collectDirtyRecord(record, dirty);
+                }
+                send(recordSender, record, (SplitRead) batch.tag);
             }
-//            Map<String, Object> recordMap = new LinkedHashMap<>();
-            List<Map<String, Object>> recordMaps = new ArrayList<>();
+        }
 
+        void transportRecords(RecordSender recordSender, SearchHit[] searchHits) {
             for (SearchHit hit : searchHits) {
-                List<EsField> column = table.getColumn();
-//                for (int i = 0; i < column.size(); i++) {
-//                    System.out.println(column.get(i).getName());
-//                }
-                if (column == null || column.isEmpty()) {
+                SourceFrame frame;
+                long start = System.nanoTime();
+                try {
+                    frame = decodeHit(hit);
+                } catch (IOException e) {
+                    parseError(hit.getId(), e);
                     continue;
                 }
+                if (frame == null) {
+                    continue;
+                }
+                metrics.onDecode(System.nanoTime() - start);
+                transportFrame(recordSender, frame);
+            }
+        }
 
-//                if (containsId) {
-//                    recordMap.put("_id", hit.getId());
-//                }
-//                Map<String, Object> parent = JSON.parseObject(hit.getSourceAsString(), LinkedHashMap.class);
-
-                Map<String, Object> parent = new LinkedHashMap<>((int) (column.size() * 1.5));
-                setDefaultValue(table.getColumn(), parent);
+        /**
+         * 没有_source时返回null
+         */
+        private SourceFrame decodeHit(SearchHit hit) throws IOException {
+            if (docValueFields != null) {
+                return decoder.decode(hit.getDocumentFields());
+            }
+            BytesReference source = hit.getSourceRef();
+            return source == null ? null : decoder.decode(source);
+        }
 
-//                System.out.println(hit.getSourceAsString());
+        private void parseError(String id, IOException e) {
+            if (!ignoreParseError) {
+                throw DataXException.asDataXException(ESReaderErrorCode.PARSE_SOURCE_ERROR, "_id:" + id, e);
+            }
+            log.warn("parse _source of [{}] is error: {}", id, e.getMessage());
+        }
 
-                setDefaultValue(table.getColumn(), parent);
-//                System.out.println(parent.keySet());
-//                System.out.println(parent.values());
+        private void transportFrame(final RecordSender recordSender, SourceFrame frame) {
+            metrics.onDocument(getPathSource(frame, row -> transportOneRecord(recordSender, row)));
+        }
 
-//                recordMaps.putAll(parent);
-                recordMaps.add(parent);
-//                this.transportOneRecord(recordSender, recordMap);
-                getPathSource(recordMaps, gson.fromJson(hit.getSourceAsString(), Map.class), column, parent);
-//                System.out.println(parent.values());
+        private void transportOneRecord(RecordSender recordSender, Object[] row) {
+            int deleteSlot = plan.getDeleteSlot();
+            Object deleted = deleteSlot >= 0 ? row[deleteSlot] : null;
+            boolean allow = filter(row);
+            if (!allow) {
+                metrics.onRejected();
+            } else if (hasValue(row)) {
+                send(recordSender, buildRecord(recordSender, row), current);
+            }
+            if (deleteSlot >= 0) {
+                // 行数组还会用于生成后面的行
+                row[deleteSlot] = deleted;
+            }
+        }
 
-                this.transportOneRecord(table, recordSender, recordMaps);
-                recordMaps.clear();
+        private void send(RecordSender recordSender, Record record, SplitRead split) {
+            long start = System.nanoTime();
+            recordSender.sendToWriter(record);
+            metrics.onSend(System.nanoTime() - start);
+            if (split != null) {
+                split.emitted++;
             }
-            return sources.size() > 0;
         }
 
-//        private void transportOneRecord(RecordSender recordSender, Map<String, Object> recordMap) {
-        private void transportOneRecord(EsTable table, RecordSender recordSender, List<Map<String, Object>> recordMaps) {
-            for (Map<String, Object> o : recordMaps) {
-                boolean allow = filter(table.getFilter(), table.getDeleteFilterKey(), o);
-                if (allow && o.entrySet().stream().anyMatch(x -> x.getValue() != null)) {
-                    Record record = buildRecord(recordSender, o);
-                    /*
-                    这里的buildrecord是核心问题
-                     */
-//                    System.out.println(record);
-                    recordSender.sendToWriter(record);
+        private boolean hasValue(Object[] row) {
+            for (Object value : row) {
+                if (value != null) {
+                    return true;
                 }
             }
+            return false;
         }
 
-        private Record buildRecord(RecordSender recordSender, Map<String, Object> source) {
+        Record buildRecord(RecordSender recordSender, Object[] row) {
             Record record = recordSender.createRecord();
-            boolean hasDirty = false;
-            StringBuilder sb = new StringBuilder();
-            for (Map.Entry<String, Object> entry : source.entrySet()) {
+            String dirty = fillRecord(record, row);
+            if (dirty != null) {
+                getTaskPluginCollector().collectDirtyRecord(record, dirty);
+            }
+            return record;
+        }
+
+        /**
+         * 返回转换失败的异常信息, 全部成功时返回null
+         */
+        private String fillRecord(Record record, Object[] row) {
+            StringBuilder sb = null;
+            for (int slot = 0; slot < row.length; slot++) {
+                if (slot == plan.getDeleteSlot()) {
+                    continue;
+                }
                 try {
-                    Object o = source.get(entry.getKey());
-                    record.addColumn(getColumn(o));
+                    record.addColumn(plan.getConverter(slot).toColumn(row[slot]));
                 } catch (Exception e) {
-                    hasDirty = true;
+                    if (sb == null) {
+                        sb = new StringBuilder();
+                    }
                     sb.append(ExceptionTracker.trace(e));
                 }
             }
-            if (hasDirty) {
-                getTaskPluginCollector().collectDirtyRecord(record, sb.toString());
-            }
-            return record;
+            return sb == null ? null : sb.toString();
         }
 
-        private Column getColumn(Object value) {
-            Column col;
-            if (value == null) {
-                col = new StringColumn();
-            } else if (value instanceof String) {
-                col = new StringColumn((String) value);
-            } else if (value instanceof Integer) {
-                col = new LongColumn(((Integer) value).longValue());
-            } else if (value instanceof Long) {
-                col = new LongColumn((Long) value);
-            } else if (value instanceof Byte) {
-                col = new LongColumn(((Byte) value).longValue());
-            } else if (value instanceof Short) {
-                col = new LongColumn(((Short) value).longValue());
-            } else if (value instanceof Double) {
-                col = new DoubleColumn(BigDecimal.valueOf((Double) value));
-            } else if (value instanceof Float) {
-                col = new DoubleColumn(BigDecimal.valueOf(((Float) value).doubleValue()));
-            } else if (value instanceof Date) {
-                col = new DateColumn((Date) value);
-            } else if (value instanceof Boolean) {
-                col = new BoolColumn((Boolean) value);
-            } else if (value instanceof byte[]) {
-                col = new BytesColumn((byte[]) value);
-            } else if (value instanceof List) {
-                col = new StringColumn(JSON.toJSONString(value));
-            } else if (value instanceof Map) {
-                col = new StringColumn(JSON.toJSONString(value));
-            } else if (value instanceof Array) {
-                col = new StringColumn(JSON.toJSONString(value));
-            } else {
-                throw DataXException.asDataXException(ESReaderErrorCode.UNKNOWN_DATA_TYPE, "type:" + value.getClass().getName());
+        /**
+         * 一个转换线程的展开、过滤和生成Record, 只在该线程中使用
+         */
+        private final class Converter implements ConvertPool.Converter, RowExpander.RowConsumer {
+            private final RecordSender recordSender;
+            private final RowExpander expander = new RowExpander(plan.width());
+            private final SlotRow slotRow = new SlotRow(plan);
+            private final RowFilter rowFilter = RowFilter.compile(residualFilter, slotRow.reset(new Object[plan.width()]));
+            private ConvertPool.Batch batch;
+
+            Converter(RecordSender recordSender) {
+                this.recordSender = recordSender;
+            }
+
+            @Override
+            public void convert(Object hit, ConvertPool.Batch batch) {
+                SourceFrame frame;
+                long decodeNanos = -1;
+                if (hit instanceof SourceFrame) {
+                    frame = (SourceFrame) hit;
+                } else {
+                    SearchHit searchHit = (SearchHit) hit;
+                    long start = System.nanoTime();
+                    try {
+                        frame = decodeHit(searchHit);
+                    } catch (IOException e) {
+                        batch.onParseError(searchHit.getId(), e);
+                        return;
+                    }
+                    if (frame == null) {
+                        return;
+                    }
+                    decodeNanos = System.nanoTime() - start;
+                }
+                this.batch = batch;
+                batch.onDocument(decodeNanos, expander.expand(frame, this));
+            }
+
+            @Override
+            public void accept(Object[] row) {
+                int deleteSlot = plan.getDeleteSlot();
+                Object deleted = deleteSlot >= 0 ? row[deleteSlot] : null;
+                if (!filter(row, slotRow, rowFilter)) {
+                    batch.onRejected();
+                } else if (hasValue(row)) {
+                    Record record = recordSender.createRecord();
+                    batch.add(record, fillRecord(record, row));
+                }
+                if (deleteSlot >= 0) {
+                    row[deleteSlot] = deleted;
+                }
             }
-            return col;
         }
 
         @Override
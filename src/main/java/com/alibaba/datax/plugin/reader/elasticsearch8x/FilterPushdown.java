@@ -0,0 +1,290 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import com.alibaba.datax.common.exception.DataXException;
+import ognl.ASTConst;
+import ognl.ASTList;
+import ognl.ASTProperty;
+import ognl.Node;
+import ognl.Ognl;
+import ognl.OgnlException;
+import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.QueryBuilders;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * 把filter中可以下推的部分改写成elasticsearch的bool.filter.
+ * <p>
+ * 只处理顶层&&连接的各个子表达式; 子表达式由等值、范围、in、null判断以及它们的&&、||、!组成,
+ * 且涉及的字段都是第一层的keyword/整数/double/boolean字段、没有配置默认值时才下推, 其余部分仍在客户端过滤.
+ * 字段为null时ognl的结果(如null当作0参与比较)会预先求值, 需要时用must_not exists补上缺失该字段的文档.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class FilterPushdown {
+    private static final Set<String> NUMERIC_TYPES = new HashSet<>(Arrays.asList("long", "integer", "short", "byte", "double"));
+    private static final Set<String> COMPARISONS = new HashSet<>(Arrays.asList(
+            "ASTEq", "ASTNotEq", "ASTLess", "ASTLessEq", "ASTGreater", "ASTGreaterEq"));
+
+    private final ColumnPlan plan;
+    private final EsMapping mapping;
+    private QueryBuilder query;
+    private String residual;
+
+    private FilterPushdown(ColumnPlan plan, EsMapping mapping) {
+        this.plan = plan;
+        this.mapping = mapping;
+    }
+
+    public static FilterPushdown analyze(String filter, ColumnPlan plan, EsMapping mapping) {
+        FilterPushdown pushdown = new FilterPushdown(plan, mapping);
+        if (StringUtils.isBlank(filter)) {
+            return pushdown;
+        }
+        Node root;
+        try {
+            root = (Node) Ognl.parseExpression(filter);
+        } catch (OgnlException e) {
+            throw DataXException.asDataXException(ESReaderErrorCode.BAD_CONFIG_VALUE, "filter:" + filter, e);
+        }
+        List<Node> conjuncts = new ArrayList<>();
+        if (isType(root, "ASTAnd")) {
+            for (int i = 0; i < root.jjtGetNumChildren(); i++) {
+                conjuncts.add(root.jjtGetChild(i));
+            }
+        } else {
+            conjuncts.add(root);
+        }
+
+        BoolQueryBuilder bool = QueryBuilders.boolQuery();
+        List<String> rest = new ArrayList<>();
+        for (Node conjunct : conjuncts) {
+            QueryBuilder pushed = pushdown.translate(conjunct);
+            if (pushed == null) {
+                rest.add(conjunct.toString());
+            } else {
+                bool.filter(pushed);
+            }
+        }
+        if (!bool.filter().isEmpty()) {
+            pushdown.query = bool;
+        }
+        pushdown.residual = rest.isEmpty() ? null : StringUtils.join(rest, " && ");
+        return pushdown;
+    }
+
+    /**
+     * 下推到elasticsearch的查询, 没有可下推的部分时为null
+     */
+    public QueryBuilder getQuery() {
+        return query;
+    }
+
+    /**
+     * 仍需在客户端执行的表达式, 全部下推时为null
+     */
+    public String getResidual() {
+        return residual;
+    }
+
+    private QueryBuilder translate(Node node) {
+        if (isType(node, "ASTAnd") || isType(node, "ASTOr")) {
+            BoolQueryBuilder bool = QueryBuilders.boolQuery();
+            for (int i = 0; i < node.jjtGetNumChildren(); i++) {
+                QueryBuilder child = translate(node.jjtGetChild(i));
+                if (child == null) {
+                    return null;
+                }
+                if (isType(node, "ASTAnd")) {
+                    bool.filter(child);
+                } else {
+                    bool.should(child);
+                }
+            }
+            return isType(node, "ASTOr") ? bool.minimumShouldMatch(1) : bool;
+        }
+        if (isType(node, "ASTNot")) {
+            QueryBuilder child = translate(node.jjtGetChild(0));
+            return child == null ? null : QueryBuilders.boolQuery().mustNot(child);
+        }
+        if (COMPARISONS.contains(node.getClass().getSimpleName()) && node.jjtGetNumChildren() == 2) {
+            return translateComparison(node);
+        }
+        if ((isType(node, "ASTIn") || isType(node, "ASTNotIn")) && node.jjtGetNumChildren() == 2) {
+            return translateIn(node);
+        }
+        return null;
+    }
+
+    private QueryBuilder translateComparison(Node node) {
+        String op = node.getClass().getSimpleName();
+        String name = propertyName(node.jjtGetChild(0));
+        Node constant = node.jjtGetChild(1);
+        if (name == null) {
+            // 常量在左边时交换两边
+            name = propertyName(node.jjtGetChild(1));
+            constant = node.jjtGetChild(0);
+            op = flip(op);
+        }
+        if (name == null || !(constant instanceof ASTConst)) {
+            return null;
+        }
+        String path = pushablePath(name);
+        if (path == null) {
+            return null;
+        }
+        Object value = ((ASTConst) constant).getValue();
+        if (value == null) {
+            if ("ASTEq".equals(op)) {
+                return QueryBuilders.boolQuery().mustNot(QueryBuilders.existsQuery(path));
+            }
+            return "ASTNotEq".equals(op) ? QueryBuilders.existsQuery(path) : null;
+        }
+        String type = mapping.get(path).getType();
+        boolean range = !"ASTEq".equals(op) && !"ASTNotEq".equals(op);
+        if (!compatible(type, value) || (range && !NUMERIC_TYPES.contains(type))) {
+            return null;
+        }
+        QueryBuilder query;
+        switch (op) {
+            case "ASTEq":
+                query = QueryBuilders.termQuery(path, value);
+                break;
+            case "ASTNotEq":
+                query = QueryBuilders.boolQuery().mustNot(QueryBuilders.termQuery(path, value));
+                break;
+            default:
+                query = range(path, op, value);
+        }
+        return withMissing(node, name, path, query);
+    }
+
+    private QueryBuilder translateIn(Node node) {
+        String name = propertyName(node.jjtGetChild(0));
+        Node list = node.jjtGetChild(1);
+        String path = name == null ? null : pushablePath(name);
+        if (path == null || !(list instanceof ASTList) || list.jjtGetNumChildren() == 0) {
+            return null;
+        }
+        String type = mapping.get(path).getType();
+        List<Object> values = new ArrayList<>();
+        for (int i = 0; i < list.jjtGetNumChildren(); i++) {
+            Node item = list.jjtGetChild(i);
+            if (!(item instanceof ASTConst) || !compatible(type, ((ASTConst) item).getValue())) {
+                return null;
+            }
+            values.add(((ASTConst) item).getValue());
+        }
+        QueryBuilder query = QueryBuilders.termsQuery(path, values);
+        if (isType(node, "ASTNotIn")) {
+            query = QueryBuilders.boolQuery().mustNot(query);
+        }
+        return withMissing(node, name, path, query);
+    }
+
+    private static RangeQueryBuilder range(String path, String op, Object value) {
+        RangeQueryBuilder range = QueryBuilders.rangeQuery(path);
+        switch (op) {
+            case "ASTLess":
+                return range.lt(value);
+            case "ASTLessEq":
+                return range.lte(value);
+            case "ASTGreater":
+                return range.gt(value);
+            default:
+                return range.gte(value);
+        }
+    }
+
+    /**
+     * 字段缺失时ognl结果为true的, 补上缺失该字段的文档
+     */
+    private QueryBuilder withMissing(Node node, String name, String path, QueryBuilder query) {
+        Map<String, Object> root = new HashMap<>();
+        root.put(name, null);
+        Object value;
+        try {
+            value = Ognl.getValue(node, Ognl.createDefaultContext(root), root);
+        } catch (Exception e) {
+            return null;
+        }
+        boolean missingMatches = value == null || Boolean.TRUE.equals(value);
+        if (value != null && !(value instanceof Boolean)) {
+            return null;
+        }
+        boolean queryMatchesMissing = query instanceof BoolQueryBuilder && !((BoolQueryBuilder) query).mustNot().isEmpty();
+        if (missingMatches == queryMatchesMissing) {
+            return query;
+        }
+        if (missingMatches) {
+            return QueryBuilders.boolQuery().should(query)
+                    .should(QueryBuilders.boolQuery().mustNot(QueryBuilders.existsQuery(path)))
+                    .minimumShouldMatch(1);
+        }
+        return QueryBuilders.boolQuery().filter(query).filter(QueryBuilders.existsQuery(path));
+    }
+
+    /**
+     * 第一层、只有一个字段写入、没有默认值、mapping类型明确的列才能下推
+     */
+    private String pushablePath(String name) {
+        int slot = plan.slotOf(name);
+        if (slot < 0 || slot == plan.getDeleteSlot() || !plan.isTopLevel(slot) || plan.hasDefault(slot)) {
+            return null;
+        }
+        String path = plan.getPath(slot);
+        EsMapping.FieldMapping field = mapping.get(path);
+        if (field == null || field.isConflict() || mapping.isUnderNested(path)) {
+            return null;
+        }
+        String type = field.getType();
+        return NUMERIC_TYPES.contains(type) || "keyword".equals(type) || "boolean".equals(type) ? path : null;
+    }
+
+    private static boolean compatible(String type, Object value) {
+        if (NUMERIC_TYPES.contains(type)) {
+            return value instanceof Integer || value instanceof Long || value instanceof Double;
+        }
+        if ("keyword".equals(type)) {
+            return value instanceof String;
+        }
+        return "boolean".equals(type) && value instanceof Boolean;
+    }
+
+    private static String propertyName(Node node) {
+        if (node instanceof ASTProperty && node.jjtGetNumChildren() == 1 && node.jjtGetChild(0) instanceof ASTConst) {
+            Object name = ((ASTConst) node.jjtGetChild(0)).getValue();
+            return name instanceof String ? (String) name : null;
+        }
+        return null;
+    }
+
+    private static String flip(String op) {
+        switch (op) {
+            case "ASTLess":
+                return "ASTGreater";
+            case "ASTLessEq":
+                return "ASTGreaterEq";
+            case "ASTGreater":
+                return "ASTLess";
+            case "ASTGreaterEq":
+                return "ASTLessEq";
+            default:
+                return op;
+        }
+    }
+
+    private static boolean isType(Node node, String type) {
+        return type.equals(node.getClass().getSimpleName());
+    }
+}
@@ -0,0 +1,103 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.document.DocumentField;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.xcontent.DeprecationHandler;
+import org.elasticsearch.xcontent.NamedXContentRegistry;
+import org.elasticsearch.xcontent.XContentParser;
+
+import java.io.IOException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * 从_search的原始响应中逐条读取hit: _source直接交给{@link SourceDecoder}按column树解析,
+ * 解析完一条就交给消费方, 同一时刻只有一条hit的对象.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public final class HitStreamReader {
+
+    public interface HitConsumer {
+        void accept(String id, SourceFrame frame);
+
+        /**
+         * 单条_source解析失败, 不影响后续hit
+         */
+        void onParseError(String id, IOException e);
+    }
+
+    private HitStreamReader() {
+    }
+
+    /**
+     * @param docValues true时从hit的fields中读取, 否则读取_source
+     */
+    public static void read(BytesReference body, SourceDecoder decoder, boolean docValues, HitConsumer consumer) throws IOException {
+        try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY,
+                DeprecationHandler.IGNORE_DEPRECATIONS, body)) {
+            if (parser.nextToken() != XContentParser.Token.START_OBJECT) {
+                throw new IOException("search response is not an object");
+            }
+            while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+                String name = parser.currentName();
+                XContentParser.Token token = parser.nextToken();
+                if (!"hits".equals(name) || token != XContentParser.Token.START_OBJECT) {
+                    parser.skipChildren();
+                    continue;
+                }
+                while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+                    String hitsName = parser.currentName();
+                    token = parser.nextToken();
+                    if (!"hits".equals(hitsName) || token != XContentParser.Token.START_ARRAY) {
+                        parser.skipChildren();
+                        continue;
+                    }
+                    while (parser.nextToken() == XContentParser.Token.START_OBJECT) {
+                        readHit(parser, decoder, docValues, consumer);
+                    }
+                }
+            }
+        }
+    }
+
+    private static void readHit(XContentParser parser, SourceDecoder decoder, boolean docValues, HitConsumer consumer) throws IOException {
+        String id = null;
+        SourceFrame frame = null;
+        IOException error = null;
+        Map<String, DocumentField> fields = null;
+        while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+            String name = parser.currentName();
+            XContentParser.Token token = parser.nextToken();
+            if ("_id".equals(name)) {
+                id = parser.text();
+            } else if (!docValues && "_source".equals(name)) {
+                try {
+                    frame = decoder.decode(parser);
+                } catch (IOException e) {
+                    error = e;
+                    parser.skipChildren();
+                }
+            } else if (docValues && "fields".equals(name) && token == XContentParser.Token.START_OBJECT) {
+                fields = new HashMap<>();
+                while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+                    String field = parser.currentName();
+                    parser.nextToken();
+                    fields.put(field, new DocumentField(field, parser.list()));
+                }
+            } else {
+                parser.skipChildren();
+            }
+        }
+        if (error != null) {
+            consumer.onParseError(id, error);
+        } else if (docValues) {
+            consumer.accept(id, decoder.decode(fields == null ? Collections.<String, DocumentField>emptyMap() : fields));
+        } else if (frame != null) {
+            consumer.accept(id, frame);
+        }
+    }
+}
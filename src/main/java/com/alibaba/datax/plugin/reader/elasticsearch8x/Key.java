@@ -1,11 +1,14 @@
 package com.alibaba.datax.plugin.reader.elasticsearch8x;
 
 
+import com.alibaba.datax.common.exception.DataXException;
 import com.alibaba.datax.common.util.Configuration;
 import com.alibaba.fastjson.JSON;
 import io.searchbox.params.SearchType;
 import org.apache.commons.lang3.StringUtils;
+import org.elasticsearch.xcontent.XContentType;
 
+import java.util.Collections;
 import java.util.HashMap;
 import java.util.List;
 import java.util.Map;
@@ -21,6 +24,30 @@ public final class Key {
     // ----------------------------------------
 
     public static final String SEARCH_KEY = "search";
+    public static final String PIT_ID_KEY = "pitId";
+    public static final String MAPPING_KEY = "mapping";
+    public static final String SLICE_ID_KEY = "slice.id";
+    public static final String SLICE_MAX_KEY = "slice.max";
+    public static final String SPLIT_ID_KEY = "split.id";
+    public static final String CHECKPOINT_JOB_KEY = "checkpoint.jobKey";
+
+    public static final String SPLIT_MODE_SEARCH = "search";
+    public static final String SPLIT_MODE_SLICE = "slice";
+    public static final String SPLIT_MODE_RANGE = "range";
+    /**
+     * range模式下一个单元的范围: field以及gte/lt/format, missing为true时表示没有该字段的文档
+     */
+    public static final String RANGE_KEY = "range";
+    /**
+     * split分给task的工作单元, 每个单元包含search、index、split.id以及slice模式下的pitId和slice
+     */
+    public static final String UNITS_KEY = "units";
+    public static final String INCREMENTAL_LOWER_KEY = "incremental.lower";
+    public static final String INCREMENTAL_UPPER_KEY = "incremental.upper";
+    public static final String INCREMENTAL_FORMAT_KEY = "incremental.format";
+    public static final String READ_MODE_SOURCE = "source";
+    public static final String READ_MODE_DOCVALUE = "docvalue";
+    public static final String READ_MODE_AUTO = "auto";
 
     public static SearchType getSearchType(Configuration conf) {
         String searchType = conf.getString("searchType", SearchType.DFS_QUERY_THEN_FETCH.toString());
@@ -43,10 +70,68 @@ public final class Key {
         return conf.getInt("size", 10);
     }
 
+    /**
+     * 是否按每页的字节数和耗时自动调整size, size作为初始值
+     */
+    public static boolean isAdaptiveSize(Configuration conf) {
+        return conf.getBool("adaptiveSize", false);
+    }
+
+    public static int getMinSize(Configuration conf) {
+        return conf.getInt("minSize", 100);
+    }
+
+    public static int getMaxSize(Configuration conf) {
+        return conf.getInt("maxSize", 10000);
+    }
+
+    /**
+     * 每页的目标字节数
+     */
+    public static long getTargetPageBytes(Configuration conf) {
+        return conf.getLong("targetPageBytes", 8L * 1024 * 1024);
+    }
+
+    /**
+     * 每页请求的耗时上限, 单位毫秒
+     */
+    public static long getPageLatencyBudget(Configuration conf) {
+        return conf.getLong("pageLatencyBudget", 5000L);
+    }
+
+    /**
+     * task定期输出读数统计日志的间隔, 单位毫秒, 0表示只在结束时输出
+     */
+    public static long getMetricsInterval(Configuration conf) {
+        return conf.getLong("metricsInterval", 60000L);
+    }
+
     public static int getTrySize(Configuration conf) {
         return conf.getInt("trySize", 30);
     }
 
+    /**
+     * 第一次重试前等待的时间, 之后按指数增长, 单位毫秒
+     */
+    public static long getTryInterval(Configuration conf) {
+        return conf.getLong("tryInterval", 1000L);
+    }
+
+    public static long getMaxTryInterval(Configuration conf) {
+        return conf.getLong("maxTryInterval", 60000L);
+    }
+
+    /**
+     * 每个task每秒的请求数(rateLimitUnit为doc时为文档数), 小于等于0不限速
+     */
+    public static double getRateLimit(Configuration conf) {
+        return conf.getDouble("rateLimit", 0D);
+    }
+
+    public static boolean isRateLimitPerDoc(Configuration conf) {
+        return "doc".equalsIgnoreCase(conf.getString("rateLimitUnit", "request"));
+    }
+
     public static int getTimeout(Configuration conf) {
         return conf.getInt("timeout", 60000);
     }
@@ -63,10 +148,44 @@ public final class Key {
         return conf.getBool("compression", true);
     }
 
+    /**
+     * 查询响应的格式: json/smile/cbor
+     */
+    public static XContentType getResponseFormat(Configuration conf) {
+        String format = conf.getString("responseFormat", "json").toLowerCase();
+        switch (format) {
+            case "json":
+                return XContentType.JSON;
+            case "smile":
+                return XContentType.SMILE;
+            case "cbor":
+                return XContentType.CBOR;
+            default:
+                throw DataXException.asDataXException(ESReaderErrorCode.BAD_CONFIG_VALUE, "responseFormat:" + format);
+        }
+    }
+
     public static boolean isMultiThread(Configuration conf) {
         return conf.getBool("multiThread", true);
     }
 
+    public static int getMaxConnPerRoute(Configuration conf) {
+        return conf.getInt("maxConnPerRoute", 30);
+    }
+
+    public static int getMaxConnTotal(Configuration conf) {
+        return conf.getInt("maxConnTotal", 100);
+    }
+
+    public static int getSniffInterval(Configuration conf) {
+        return conf.getInt("sniffInterval", 300000);
+    }
+
+    public static List<Configuration> getUnits(Configuration conf) {
+        List<Configuration> units = conf.getListConfiguration(UNITS_KEY);
+        return units == null ? Collections.emptyList() : units;
+    }
+
     public static String getIndexName(Configuration conf) {
         return conf.getNecessaryValue("index", ESReaderErrorCode.BAD_CONFIG_VALUE);
     }
@@ -152,6 +271,163 @@ public final class Key {
         return conf.getString("scroll");
     }
 
+    public static String getSplitMode(Configuration conf) {
+        return conf.getString("splitMode", SPLIT_MODE_SEARCH);
+    }
+
+    public static boolean isSliceSplit(Configuration conf) {
+        return SPLIT_MODE_SLICE.equalsIgnoreCase(getSplitMode(conf));
+    }
+
+    public static boolean isRangeSplit(Configuration conf) {
+        return SPLIT_MODE_RANGE.equalsIgnoreCase(getSplitMode(conf));
+    }
+
+    /**
+     * range模式按此字段切分, 需要是数值或日期类型
+     */
+    public static String getSplitField(Configuration conf) {
+        return conf.getString("splitField", null);
+    }
+
+    public static Map<String, Object> getSplitRange(Configuration conf) {
+        return conf.getMap(RANGE_KEY);
+    }
+
+    public static String getReadMode(Configuration conf) {
+        String readMode = conf.getString("readMode", READ_MODE_SOURCE).toLowerCase();
+        if (!READ_MODE_SOURCE.equals(readMode) && !READ_MODE_DOCVALUE.equals(readMode) && !READ_MODE_AUTO.equals(readMode)) {
+            throw DataXException.asDataXException(ESReaderErrorCode.BAD_CONFIG_VALUE, "readMode:" + readMode);
+        }
+        return readMode;
+    }
+
+    public static boolean isUsePit(Configuration conf) {
+        return conf.getBool("usePit", true);
+    }
+
+    public static String getPitKeepAlive(Configuration conf) {
+        return conf.getString("pitKeepAlive", "5m");
+    }
+
+    public static String getPitId(Configuration conf) {
+        return conf.getString(PIT_ID_KEY);
+    }
+
+    public static int getSliceId(Configuration conf) {
+        return conf.getInt(SLICE_ID_KEY, -1);
+    }
+
+    public static int getSliceMax(Configuration conf) {
+        return conf.getInt(SLICE_MAX_KEY, 0);
+    }
+
+    public static String getSplitId(Configuration conf) {
+        return conf.getString(SPLIT_ID_KEY, "0");
+    }
+
+    /**
+     * 增量读取依据的单调递增字段, 为空时全量读取
+     */
+    public static String getIncrementalField(Configuration conf) {
+        return conf.getString("incrementalField", null);
+    }
+
+    /**
+     * 保存增量水位的本地目录
+     */
+    public static String getIncrementalStateDir(Configuration conf) {
+        return conf.getString("incrementalStateDir", null);
+    }
+
+    public static Object getIncrementalLower(Configuration conf) {
+        return conf.get(INCREMENTAL_LOWER_KEY);
+    }
+
+    public static Object getIncrementalUpper(Configuration conf) {
+        return conf.get(INCREMENTAL_UPPER_KEY);
+    }
+
+    public static String getIncrementalFormat(Configuration conf) {
+        return conf.getString(INCREMENTAL_FORMAT_KEY, null);
+    }
+
+    /**
+     * 保存翻页进度的本地目录, 为空时不保存
+     */
+    public static String getCheckpointDir(Configuration conf) {
+        return conf.getString("checkpointDir", null);
+    }
+
+    /**
+     * 每读多少页保存一次进度
+     */
+    public static int getCheckpointInterval(Configuration conf) {
+        return Math.max(1, conf.getInt("checkpointInterval", 10));
+    }
+
+    public static String getCheckpointJobKey(Configuration conf) {
+        return conf.getString(CHECKPOINT_JOB_KEY, null);
+    }
+
+    public static int getPrefetch(Configuration conf) {
+        return conf.getInt("prefetch", 2);
+    }
+
+    /**
+     * task内并行解析和转换hit的线程数, 0表示在task线程中转换
+     */
+    public static int getConvertThreads(Configuration conf) {
+        return Math.max(0, conf.getInt("convertThreads", 0));
+    }
+
+    /**
+     * 并行转换时是否保持hit的顺序发送
+     */
+    public static boolean isConvertOrdered(Configuration conf) {
+        return conf.getBool("convertOrdered", true);
+    }
+
+    /**
+     * 一个task同时读取的split数, 大于1时split按channel数乘以该值拆分
+     */
+    public static int getSplitConcurrency(Configuration conf) {
+        return Math.max(1, conf.getInt("splitConcurrency", 1));
+    }
+
+    /**
+     * 每个task已下载但还没发送的数据的内存预算, 单位字节, 小于等于0不限制
+     */
+    public static long getMemoryBudget(Configuration conf) {
+        return conf.getLong("memoryBudget", 0L);
+    }
+
+    /**
+     * 同一个JVM中所有task共用的内存预算, 单位字节, 小于等于0不限制
+     */
+    public static long getJvmMemoryBudget(Configuration conf) {
+        return conf.getLong("jvmMemoryBudget", 0L);
+    }
+
+    /**
+     * mapping区分不出多值字段, 数组展开后逐行过滤和下推后任一值匹配整条文档的结果不同, 默认不下推
+     */
+    public static boolean isFilterPushdown(Configuration conf) {
+        return conf.getBool("filterPushdown", false);
+    }
+
+    public static boolean isRawTransport(Configuration conf) {
+        return conf.getBool("rawTransport", false);
+    }
+
+    public static boolean isTypedColumn(Configuration conf) {
+        return conf.getBool("typedColumn", true);
+    }
+
+    public static EsMapping getMapping(Configuration conf) {
+        return EsMapping.fromConfig(conf.getMap(MAPPING_KEY));
+    }
+
     public static EsTable getTable(Configuration conf) {
         String column = conf.getString("table");
         return JSON.parseObject(column, EsTable.class);
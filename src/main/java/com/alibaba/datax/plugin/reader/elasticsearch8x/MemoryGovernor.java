@@ -0,0 +1,150 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import java.io.InterruptedIOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 按估算的字节数限制已下载但还没发送给writer的数据: 预取缓冲中的页、正在转换的页和转换线程中的批.
+ * <p>
+ * 每个task一个实例, 同时受本task的预算和整个JVM(所有task共用)的预算限制, 预算小于等于0表示不限制.
+ * 估算值为响应的字节数(high level client按_source和fields估算), 解析出的对象通常是它的数倍. 翻页请求发出前先预留上一页的大小,
+ * 超出预算时不发请求, 等其他页释放后再发; 本task没有占用时总是放行, 保证单页超过预算时也能读下去.
+ * 交给RecordSender之后的record由DataX channel的byteCapacity限制.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class MemoryGovernor {
+    private static final Object LOCK = new Object();
+    private static long jvmUsed = 0;
+    private static long jvmPeak = 0;
+    /**
+     * 因超出预算等待的回调, 任何task释放后全部重试一次
+     */
+    private static final List<Runnable> WAITING = new ArrayList<>();
+
+    private final long budget;
+    private final long jvmBudget;
+    private long used = 0;
+    private long peak = 0;
+    private long blocked = 0;
+    private long blockedNanos = 0;
+
+    /**
+     * @param budget    本task的预算, 单位字节
+     * @param jvmBudget 整个JVM的预算, 单位字节
+     */
+    public MemoryGovernor(long budget, long jvmBudget) {
+        this.budget = budget;
+        this.jvmBudget = jvmBudget;
+    }
+
+    private boolean allowed(long bytes) {
+        if (used <= 0) {
+            return true;
+        }
+        return (budget <= 0 || used + bytes <= budget) && (jvmBudget <= 0 || jvmUsed + bytes <= jvmBudget);
+    }
+
+    private void add(long bytes) {
+        used += bytes;
+        jvmUsed += bytes;
+        peak = Math.max(peak, used);
+        jvmPeak = Math.max(jvmPeak, jvmUsed);
+    }
+
+    /**
+     * 预算足够时预留并返回true; 否则登记onAvailable, 有内存释放时在释放的线程中回调, 返回false
+     */
+    public boolean tryReserve(long bytes, Runnable onAvailable) {
+        synchronized (LOCK) {
+            if (allowed(bytes)) {
+                add(bytes);
+                return true;
+            }
+            blocked++;
+            WAITING.add(onAvailable);
+            return false;
+        }
+    }
+
+    /**
+     * 阻塞直到预算足够
+     */
+    public void reserve(long bytes) throws InterruptedIOException {
+        synchronized (LOCK) {
+            if (allowed(bytes)) {
+                add(bytes);
+                return;
+            }
+            blocked++;
+            long start = System.nanoTime();
+            try {
+                while (!allowed(bytes)) {
+                    LOCK.wait(TimeUnit.SECONDS.toMillis(1));
+                }
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                throw new InterruptedIOException("interrupted while waiting for memory budget");
+            } finally {
+                blockedNanos += System.nanoTime() - start;
+            }
+            add(bytes);
+        }
+    }
+
+    /**
+     * 不检查预算直接调整占用, 用于响应返回后把预留的估算值修正为实际大小, 或者记录已经在内存中的数据
+     */
+    public void adjust(long delta) {
+        if (delta < 0) {
+            release(-delta);
+            return;
+        }
+        synchronized (LOCK) {
+            add(delta);
+        }
+    }
+
+    public void release(long bytes) {
+        if (bytes <= 0) {
+            return;
+        }
+        List<Runnable> callbacks;
+        synchronized (LOCK) {
+            used -= bytes;
+            jvmUsed -= bytes;
+            LOCK.notifyAll();
+            if (WAITING.isEmpty()) {
+                return;
+            }
+            callbacks = new ArrayList<>(WAITING);
+            WAITING.clear();
+        }
+        for (Runnable callback : callbacks) {
+            callback.run();
+        }
+    }
+
+    public long getUsed() {
+        synchronized (LOCK) {
+            return used;
+        }
+    }
+
+    public static long getJvmUsed() {
+        synchronized (LOCK) {
+            return jvmUsed;
+        }
+    }
+
+    @Override
+    public String toString() {
+        synchronized (LOCK) {
+            return String.format("used=%d peak=%d budget=%d jvmUsed=%d jvmPeak=%d jvmBudget=%d blocked=%d blockedWait=%dms",
+                    used, peak, budget, jvmUsed, jvmPeak, jvmBudget, blocked, TimeUnit.NANOSECONDS.toMillis(blockedNanos));
+        }
+    }
+}
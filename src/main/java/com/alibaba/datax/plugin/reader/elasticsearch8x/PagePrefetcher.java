@@ -0,0 +1,307 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.client.Cancellable;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.InterruptedIOException;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.Executors;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 预取下一页: 上一页一返回就通过异步接口发起下一页请求, 结果放入有界缓冲,
+ * 这样第k页的转换和第k+1页的下载可以重叠.
+ * <p>
+ * search_after的下一页依赖上一页最后一条的sort值, 所以同一时刻最多只有一个请求在途,
+ * depth限制的是已下载但还没被消费的页数; depth为0时退化为同步翻页.
+ * <p>
+ * 每个请求发出前先经过限速, 可重试的失败按{@link RetryPolicy}退避后重发同一页,
+ * 等待通过共享的定时线程完成, 不占用client的io线程.
+ * <p>
+ * 请求发出前按上一页的大小向{@link MemoryGovernor}预留内存, 超出预算时暂停预取, 有内存释放后再继续;
+ * 响应返回后修正为实际大小并记在页上, 由消费方处理完后释放.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class PagePrefetcher implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(PagePrefetcher.class);
+
+    private static final Object END = new Object();
+
+    private static final ScheduledExecutorService SCHEDULER = Executors.newSingleThreadScheduledExecutor(r -> {
+        Thread thread = new Thread(r, "es-reader-retry");
+        thread.setDaemon(true);
+        return thread;
+    });
+
+    private final SearchPager pager;
+    private final int depth;
+    private final RetryPolicy retryPolicy;
+    private final RateLimiter rateLimiter;
+    private final BlockingQueue<Object> buffer = new LinkedBlockingQueue<>();
+    private final Semaphore slots;
+    private final MemoryGovernor memory;
+
+    private volatile Runnable listener;
+    private boolean inFlight = false;
+    /**
+     * 在途请求预留的字节数
+     */
+    private long reserved = 0;
+    /**
+     * 下一页的估算大小, 取上一页的实际大小
+     */
+    private long estimate = 0;
+    private boolean stopped = false;
+    private Cancellable cancellable;
+    private ScheduledFuture<?> scheduled;
+
+    public PagePrefetcher(SearchPager pager, int depth, RetryPolicy retryPolicy, RateLimiter rateLimiter, MemoryGovernor memory) {
+        this.pager = pager;
+        this.memory = memory;
+        this.depth = Math.max(depth, 0);
+        this.slots = new Semaphore(this.depth);
+        this.retryPolicy = retryPolicy;
+        this.rateLimiter = rateLimiter;
+    }
+
+    /**
+     * 每放入一页、读完或出错时回调, 用于一个线程等待多个预取器
+     */
+    public void setListener(Runnable listener) {
+        this.listener = listener;
+    }
+
+    /**
+     * take()是否可以不阻塞地返回; depth为0时take()要同步请求并可能等待内存预算, 总是返回false
+     */
+    public boolean isReady() {
+        return depth > 0 && !buffer.isEmpty();
+    }
+
+    private void notifyListener() {
+        Runnable current = listener;
+        if (current != null) {
+            current.run();
+        }
+    }
+
+    public void start() {
+        if (depth > 0) {
+            fetchNext();
+        }
+    }
+
+    /**
+     * 取下一页, 读完返回null
+     */
+    public SearchPage take() throws IOException {
+        if (depth == 0) {
+            return pager.hasNext() ? nextSync() : null;
+        }
+        Object item;
+        try {
+            item = buffer.take();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting for search page");
+        }
+        if (item == END) {
+            buffer.add(END);
+            return null;
+        }
+        if (item instanceof Exception) {
+            buffer.add(item);
+            Exception e = (Exception) item;
+            throw e instanceof IOException ? (IOException) e : new IOException(e);
+        }
+        slots.release();
+        fetchNext();
+        return (SearchPage) item;
+    }
+
+    private SearchPage nextSync() throws IOException {
+        long bytes = estimate;
+        memory.reserve(bytes);
+        for (int attempt = 1; ; attempt++) {
+            sleep(rateLimiter.reserve(pager.getPageSize()));
+            try {
+                SearchPage page = pager.next();
+                rateLimiter.onSuccess();
+                estimate = page.getBytes() >= 0 ? page.getBytes() : bytes;
+                memory.adjust(estimate - bytes);
+                page.setReserved(estimate);
+                return page;
+            } catch (IOException | RuntimeException e) {
+                if (!retryPolicy.shouldRetry(e, attempt)) {
+                    memory.release(bytes);
+                    throw e;
+                }
+                sleep(backoff(e, attempt));
+            }
+        }
+    }
+
+    private static void sleep(long millis) throws InterruptedIOException {
+        if (millis <= 0) {
+            return;
+        }
+        try {
+            Thread.sleep(millis);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("interrupted while waiting to retry search");
+        }
+    }
+
+    private long backoff(Exception e, int attempt) {
+        if (RetryPolicy.isThrottled(e)) {
+            rateLimiter.onThrottled();
+        }
+        long delay = retryPolicy.delayMillis(e, attempt);
+        log.warn("search failed (attempt {}/{}), retry in {}ms, rate limit {}/s: {}",
+                attempt, retryPolicy.getMaxTries(), delay, String.format("%.1f", rateLimiter.getRate()), e.getMessage());
+        return delay;
+    }
+
+    private void fetchNext() {
+        synchronized (this) {
+            if (inFlight || stopped || !pager.hasNext() || !slots.tryAcquire()) {
+                return;
+            }
+            if (!memory.tryReserve(estimate, this::fetchNext)) {
+                slots.release();
+                return;
+            }
+            reserved = estimate;
+            inFlight = true;
+        }
+        send(1, 0);
+    }
+
+    /**
+     * 等待delay和限速之后发送第attempt次请求
+     */
+    private void send(int attempt, long delay) {
+        long wait = Math.max(delay, rateLimiter.reserve(pager.getPageSize()));
+        if (wait <= 0) {
+            request(attempt);
+            return;
+        }
+        synchronized (this) {
+            if (stopped) {
+                inFlight = false;
+                return;
+            }
+            scheduled = SCHEDULER.schedule(() -> request(attempt), wait, TimeUnit.MILLISECONDS);
+        }
+    }
+
+    private void request(int attempt) {
+        synchronized (this) {
+            if (stopped) {
+                inFlight = false;
+                return;
+            }
+        }
+        Cancellable request = pager.nextAsync(new ActionListener<SearchPage>() {
+            @Override
+            public void onResponse(SearchPage page) {
+                rateLimiter.onSuccess();
+                long actual;
+                long delta;
+                synchronized (PagePrefetcher.this) {
+                    if (stopped) {
+                        // close已经释放了预留的内存
+                        inFlight = false;
+                        return;
+                    }
+                    actual = page.getBytes() >= 0 ? page.getBytes() : reserved;
+                    delta = actual - reserved;
+                    reserved = actual;
+                }
+                // 先修正预留再放入缓冲, 否则消费方可能先释放页的内存, 占用暂时变成负数
+                memory.adjust(delta);
+                synchronized (PagePrefetcher.this) {
+                    inFlight = false;
+                    if (stopped) {
+                        return;
+                    }
+                    reserved = 0;
+                    estimate = actual;
+                    page.setReserved(actual);
+                    buffer.add(page);
+                    if (page.isLast()) {
+                        buffer.add(END);
+                    }
+                }
+                if (!page.isLast()) {
+                    fetchNext();
+                }
+                notifyListener();
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                boolean retry;
+                long release = 0;
+                synchronized (PagePrefetcher.this) {
+                    retry = !stopped && retryPolicy.shouldRetry(e, attempt);
+                    if (!retry) {
+                        inFlight = false;
+                        stopped = true;
+                        release = reserved;
+                        reserved = 0;
+                    }
+                }
+                memory.release(release);
+                if (retry) {
+                    send(attempt + 1, backoff(e, attempt));
+                    return;
+                }
+                buffer.add(e);
+                notifyListener();
+            }
+        });
+        synchronized (this) {
+            cancellable = request;
+        }
+    }
+
+    @Override
+    public void close() {
+        Cancellable request;
+        long release;
+        synchronized (this) {
+            stopped = true;
+            request = inFlight ? cancellable : null;
+            if (scheduled != null) {
+                scheduled.cancel(false);
+            }
+            // 在途请求和缓冲中还没被取走的页预留的内存
+            release = reserved;
+            reserved = 0;
+            for (Object item : buffer) {
+                if (item instanceof SearchPage) {
+                    release += ((SearchPage) item).takeReserved();
+                }
+            }
+            buffer.clear();
+        }
+        memory.release(release);
+        if (request != null) {
+            log.info("cancel in-flight search request");
+            request.cancel();
+        }
+        pager.close();
+    }
+}
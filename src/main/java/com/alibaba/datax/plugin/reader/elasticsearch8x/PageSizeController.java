@@ -0,0 +1,88 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 按每页的字节数和耗时调整下一页的size.
+ * <p>
+ * 用平滑后的单条字节数和单条耗时分别推算满足targetBytes和latencyBudget的size, 取两者中较小的一个;
+ * 每次最多放大/缩小一倍, 并限制在[min, max]之间, 避免个别大文档或慢请求造成抖动.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class PageSizeController {
+    private static final double SMOOTHING = 0.3;
+    private static final int MAX_TRAJECTORY = 64;
+
+    private final int min;
+    private final int max;
+    private final long targetBytes;
+    private final long latencyBudgetMillis;
+
+    private int size;
+    private double bytesPerDoc = -1;
+    private double millisPerDoc = -1;
+    private int pages = 0;
+    private final List<String> trajectory = new ArrayList<>();
+
+    public PageSizeController(int initialSize, int min, int max, long targetBytes, long latencyBudgetMillis) {
+        this.min = Math.max(1, min);
+        this.max = Math.max(this.min, max);
+        this.targetBytes = targetBytes;
+        this.latencyBudgetMillis = latencyBudgetMillis;
+        this.size = clamp(initialSize);
+        trajectory.add("0:" + size);
+    }
+
+    /**
+     * 下一页请求的size
+     */
+    public synchronized int getSize() {
+        return size;
+    }
+
+    /**
+     * 记录一页的结果. 不满一页(最后一页)的数据不具代表性, 不参与调整
+     */
+    public synchronized void observe(int requested, int hits, long bytes, long latencyMillis) {
+        pages++;
+        if (hits <= 0 || hits < requested) {
+            return;
+        }
+        bytesPerDoc = smooth(bytesPerDoc, (double) bytes / hits);
+        millisPerDoc = smooth(millisPerDoc, (double) latencyMillis / hits);
+
+        double wanted = max;
+        if (targetBytes > 0 && bytesPerDoc > 0) {
+            wanted = Math.min(wanted, targetBytes / bytesPerDoc);
+        }
+        if (latencyBudgetMillis > 0 && millisPerDoc > 0) {
+            wanted = Math.min(wanted, latencyBudgetMillis / millisPerDoc);
+        }
+        wanted = Math.max(size / 2.0, Math.min(size * 2.0, wanted));
+        int next = clamp((int) wanted);
+        if (next != size) {
+            size = next;
+            if (trajectory.size() < MAX_TRAJECTORY) {
+                trajectory.add(pages + ":" + size);
+            }
+        }
+    }
+
+    /**
+     * size的变化过程, 格式为"页号:size"
+     */
+    public synchronized String getTrajectory() {
+        return String.join(",", trajectory);
+    }
+
+    private static double smooth(double old, double value) {
+        return old < 0 ? value : old + SMOOTHING * (value - old);
+    }
+
+    private int clamp(int value) {
+        return Math.max(min, Math.min(max, value));
+    }
+}
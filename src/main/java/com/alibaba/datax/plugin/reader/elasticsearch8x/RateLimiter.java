@@ -0,0 +1,95 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+/**
+ * 单个task的令牌桶限速, 单位为请求数或文档数(每页的size).
+ * <p>
+ * 集群返回429时速率减半(没有配置限速时以实际速率为基准开始限速), 之后每个成功的请求加回一小步,
+ * 最多恢复到配置的速率; 没有配置限速且限速不再起作用时取消限速.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class RateLimiter {
+    private static final double SMOOTHING = 0.3;
+    /**
+     * 限速的下限: 每10秒至少一个请求
+     */
+    private static final double MIN_REQUESTS_PER_SECOND = 0.1;
+
+    private final double maxRate;
+    private final boolean perDoc;
+
+    private double rate;
+    private double step = 0;
+    private double available = 0;
+    private long last = System.nanoTime();
+    private long lastReserve = -1;
+    private double observed = -1;
+    private double lastCost = 1;
+
+    /**
+     * @param maxRate 每秒的请求数或文档数, 小于等于0为不限速
+     * @param perDoc  true时按文档数限速
+     */
+    public RateLimiter(double maxRate, boolean perDoc) {
+        this.maxRate = maxRate;
+        this.perDoc = perDoc;
+        this.rate = maxRate;
+        this.available = Math.max(maxRate, 0);
+    }
+
+    /**
+     * 预留一个请求的额度, 返回需要等待的毫秒数
+     */
+    public synchronized long reserve(int pageSize) {
+        double cost = perDoc ? Math.max(pageSize, 1) : 1;
+        lastCost = cost;
+        long now = System.nanoTime();
+        if (lastReserve > 0 && now > lastReserve) {
+            double value = cost / ((now - lastReserve) / 1e9);
+            observed = observed < 0 ? value : observed + SMOOTHING * (value - observed);
+        }
+        lastReserve = now;
+        if (rate <= 0) {
+            last = now;
+            return 0;
+        }
+        // 最多积攒1秒的额度
+        available = Math.min(Math.max(rate, cost), available + (now - last) / 1e9 * rate);
+        last = now;
+        available -= cost;
+        return available >= 0 ? 0 : (long) Math.ceil(-available / rate * 1000);
+    }
+
+    /**
+     * 集群过载, 速率减半
+     */
+    public synchronized void onThrottled() {
+        double floor = lastCost * MIN_REQUESTS_PER_SECOND;
+        double base = rate > 0 ? rate : (observed > 0 ? observed : floor);
+        rate = Math.max(floor, base / 2);
+        step = Math.max(rate * 0.05, floor / 10);
+        available = Math.min(available, 0);
+    }
+
+    public synchronized void onSuccess() {
+        if (rate <= 0 || step <= 0) {
+            return;
+        }
+        rate += step;
+        if (maxRate > 0) {
+            rate = Math.min(rate, maxRate);
+        } else if (observed > 0 && rate > observed * 2) {
+            // 实际速率远低于限速, 限速已不起作用
+            rate = 0;
+            step = 0;
+        }
+    }
+
+    /**
+     * 当前速率, 0为不限速
+     */
+    public synchronized double getRate() {
+        return Math.max(rate, 0);
+    }
+}
@@ -0,0 +1,233 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 单个task读数各阶段的耗时分布和计数, 只在task线程中更新, 不做同步.
+ * 耗时单位为微秒, 大小单位为字节
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class ReaderMetrics {
+    /**
+     * 发出请求到拿到解析后的响应
+     */
+    final Histogram requestLatency = new Histogram();
+    /**
+     * 响应中的took
+     */
+    final Histogram took = new Histogram();
+    final Histogram responseBytes = new Histogram();
+    /**
+     * 单条文档解析_source的耗时
+     */
+    final Histogram decode = new Histogram();
+    /**
+     * 单条文档展开后的行数
+     */
+    final Histogram fanOut = new Histogram();
+    /**
+     * 单条record阻塞在sendToWriter上的耗时
+     */
+    final Histogram send = new Histogram();
+    /**
+     * 每页返回时本task在MemoryGovernor中的占用
+     */
+    final Histogram memoryUsed = new Histogram();
+
+    private final long reportIntervalNanos;
+    private long lastReport = System.nanoTime();
+    private long pages = 0;
+    private long hits = 0;
+    private long rows = 0;
+    private long rejected = 0;
+    private long records = 0;
+    private long waitNanos = 0;
+    private MemoryGovernor memory;
+
+    /**
+     * @param reportInterval 定期输出汇总日志的间隔, 单位毫秒; 小于等于0不输出
+     */
+    public ReaderMetrics(long reportInterval) {
+        this.reportIntervalNanos = TimeUnit.MILLISECONDS.toNanos(reportInterval);
+    }
+
+    public void setMemory(MemoryGovernor memory) {
+        this.memory = memory;
+    }
+
+    public void onPage(SearchPage page, long waitNanos) {
+        pages++;
+        if (memory != null) {
+            memoryUsed.record(memory.getUsed());
+        }
+        hits += page.size();
+        this.waitNanos += waitNanos;
+        if (page.getLatencyNanos() >= 0) {
+            requestLatency.record(page.getLatencyNanos() / 1000);
+        }
+        if (page.getTook() >= 0) {
+            took.record(page.getTook() * 1000);
+        }
+        if (page.getBytes() >= 0) {
+            responseBytes.record(page.getBytes());
+        }
+    }
+
+    /**
+     * composite模式的一页bucket, 按hit计数
+     */
+    public void onBuckets(int buckets, long waitNanos) {
+        pages++;
+        hits += buckets;
+        this.waitNanos += waitNanos;
+        requestLatency.record(waitNanos / 1000);
+    }
+
+    public void onDecode(long nanos) {
+        decode.record(nanos / 1000);
+    }
+
+    public void onDocument(int rowCount) {
+        rows += rowCount;
+        fanOut.record(rowCount);
+    }
+
+    public void onRejected() {
+        rejected++;
+    }
+
+    public void onSend(long nanos) {
+        records++;
+        send.record(nanos / 1000);
+    }
+
+    public long getPages() {
+        return pages;
+    }
+
+    public long getHits() {
+        return hits;
+    }
+
+    /**
+     * 等待翻页结果的总耗时, 单位纳秒
+     */
+    public long getWaitNanos() {
+        return waitNanos;
+    }
+
+    public long getResponseBytes() {
+        return responseBytes.getSum();
+    }
+
+    /**
+     * 距离上次输出超过间隔时返回true
+     */
+    public boolean shouldReport() {
+        if (reportIntervalNanos <= 0) {
+            return false;
+        }
+        long now = System.nanoTime();
+        if (now - lastReport < reportIntervalNanos) {
+            return false;
+        }
+        lastReport = now;
+        return true;
+    }
+
+    public String summary() {
+        String summary = String.format("pages=%d hits=%d rows=%d rejected=%d records=%d wait=%dms"
+                        + " latency(us)[%s] took(us)[%s] bytes[%s] decode(us)[%s] fanOut[%s] send(us)[%s]",
+                pages, hits, rows, rejected, records, TimeUnit.NANOSECONDS.toMillis(waitNanos),
+                requestLatency, took, responseBytes, decode, fanOut, send);
+        if (memory == null) {
+            return summary;
+        }
+        return summary + String.format(" memory[%s] memoryUsed[%s]", memory, memoryUsed);
+    }
+
+    /**
+     * 对数-线性分桶的直方图, 和HdrHistogram一样每个2的幂区间再等分成32份, 相对误差不超过1/32.
+     * 只记录非负值, 负值按0计
+     */
+    static final class Histogram {
+        private static final int SUB_BITS = 5;
+        private static final int SUB_COUNT = 1 << SUB_BITS;
+
+        private final long[] counts = new long[(65 - SUB_BITS) * SUB_COUNT];
+        private long count = 0;
+        private long sum = 0;
+        private long max = 0;
+
+        void record(long value) {
+            long v = Math.max(0, value);
+            counts[indexOf(v)]++;
+            count++;
+            sum += v;
+            if (v > max) {
+                max = v;
+            }
+        }
+
+        static int indexOf(long value) {
+            if (value < SUB_COUNT) {
+                return (int) value;
+            }
+            int shift = 63 - Long.numberOfLeadingZeros(value) - SUB_BITS;
+            return (shift + 1) * SUB_COUNT + (int) (value >>> shift) - SUB_COUNT;
+        }
+
+        /**
+         * 桶内的最大值
+         */
+        static long highestOf(int index) {
+            if (index < SUB_COUNT) {
+                return index;
+            }
+            int shift = index / SUB_COUNT - 1;
+            long top = SUB_COUNT + index % SUB_COUNT;
+            return ((top + 1) << shift) - 1;
+        }
+
+        long getCount() {
+            return count;
+        }
+
+        long getSum() {
+            return sum;
+        }
+
+        long getMax() {
+            return max;
+        }
+
+        /**
+         * @param quantile 0到1之间
+         */
+        long percentile(double quantile) {
+            if (count == 0) {
+                return 0;
+            }
+            long rank = Math.max(1, (long) Math.ceil(quantile * count));
+            long seen = 0;
+            for (int i = 0; i < counts.length; i++) {
+                seen += counts[i];
+                if (seen >= rank) {
+                    return Math.min(highestOf(i), max);
+                }
+            }
+            return max;
+        }
+
+        @Override
+        public String toString() {
+            if (count == 0) {
+                return "n=0";
+            }
+            return String.format("n=%d avg=%d p50=%d p90=%d p99=%d max=%d",
+                    count, sum / count, percentile(0.5), percentile(0.9), percentile(0.99), max);
+        }
+    }
+}
@@ -0,0 +1,137 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import org.apache.http.ConnectionClosedException;
+import org.apache.http.NoHttpResponseException;
+import org.elasticsearch.ElasticsearchStatusException;
+import org.elasticsearch.client.ResponseException;
+
+import java.net.ConnectException;
+import java.net.SocketTimeoutException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+
+/**
+ * 翻页请求的重试策略: 集群过载(429/es_rejected_execution)、网关错误和连接异常可以重试,
+ * 等待时间按指数退避并加随机抖动, 响应带Retry-After时至少等待其指定的时间.
+ * <p>
+ * search_after的进度只在请求成功后才前进, 同一页重试是安全的.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class RetryPolicy {
+    private static final int MAX_DEPTH = 8;
+
+    private final int maxTries;
+    private final long baseDelayMillis;
+    private final long maxDelayMillis;
+
+    public RetryPolicy(int maxTries, long baseDelayMillis, long maxDelayMillis) {
+        this.maxTries = Math.max(1, maxTries);
+        this.baseDelayMillis = Math.max(1, baseDelayMillis);
+        this.maxDelayMillis = Math.max(this.baseDelayMillis, maxDelayMillis);
+    }
+
+    public int getMaxTries() {
+        return maxTries;
+    }
+
+    /**
+     * @param attempt 已经进行的次数, 从1开始
+     */
+    public boolean shouldRetry(Throwable e, int attempt) {
+        return attempt < maxTries && isRetryable(e);
+    }
+
+    /**
+     * 第attempt次失败后等待的时间
+     */
+    public long delayMillis(Throwable e, int attempt) {
+        long delay = baseDelayMillis << Math.min(attempt - 1, 30);
+        delay = Math.min(delay < 0 ? maxDelayMillis : delay, maxDelayMillis);
+        // equal jitter: 一半固定, 一半随机, 避免多个task同时重试
+        delay = delay / 2 + ThreadLocalRandom.current().nextLong(delay / 2 + 1);
+        return Math.max(delay, retryAfterMillis(e));
+    }
+
+    public static boolean isRetryable(Throwable e) {
+        for (Throwable t : chain(e)) {
+            int status = statusOf(t);
+            if (status == 429 || status == 502 || status == 503 || status == 504) {
+                return true;
+            }
+            if (t instanceof ConnectException || t instanceof SocketTimeoutException
+                    || t instanceof ConnectionClosedException || t instanceof NoHttpResponseException) {
+                return true;
+            }
+            if (isRejected(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 是否是集群过载导致的失败, 是则需要降低请求速率
+     */
+    public static boolean isThrottled(Throwable e) {
+        for (Throwable t : chain(e)) {
+            if (statusOf(t) == 429 || isRejected(t)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    static long retryAfterMillis(Throwable e) {
+        for (Throwable t : chain(e)) {
+            if (t instanceof ResponseException) {
+                String retryAfter = ((ResponseException) t).getResponse().getHeader("Retry-After");
+                if (retryAfter != null) {
+                    try {
+                        return Long.parseLong(retryAfter.trim()) * 1000;
+                    } catch (NumberFormatException ignore) {
+                        // http-date格式的Retry-After忽略
+                    }
+                }
+            }
+        }
+        return -1;
+    }
+
+    private static boolean isRejected(Throwable t) {
+        String message = t.getMessage();
+        return message != null && (message.contains("es_rejected_execution_exception") || message.contains("EsRejectedExecutionException"));
+    }
+
+    private static int statusOf(Throwable t) {
+        if (t instanceof ResponseException) {
+            return ((ResponseException) t).getResponse().getStatusLine().getStatusCode();
+        }
+        if (t instanceof ElasticsearchStatusException) {
+            return ((ElasticsearchStatusException) t).status().getStatus();
+        }
+        return -1;
+    }
+
+    /**
+     * 异常本身、cause和suppressed(high level client把原始的ResponseException放在suppressed里)
+     */
+    private static List<Throwable> chain(Throwable e) {
+        List<Throwable> result = new ArrayList<>();
+        collect(e, result, 0);
+        return result;
+    }
+
+    private static void collect(Throwable t, List<Throwable> result, int depth) {
+        if (t == null || depth > MAX_DEPTH || result.contains(t)) {
+            return;
+        }
+        result.add(t);
+        for (Throwable suppressed : t.getSuppressed()) {
+            collect(suppressed, result, depth + 1);
+        }
+        collect(t.getCause(), result, depth + 1);
+    }
+}
@@ -0,0 +1,146 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * 按column树把一条文档展开成若干行: 数组字段的每个元素各产生一行, 多个数组之间做笛卡尔积.
+ * 深度优先逐行生成, 所有行共用同一个slot数组, 回溯时按写入记录还原,
+ * 占用的内存只和文档本身的大小有关, 和展开后的行数无关.
+ * 同一个实例不能并发使用
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+final class RowExpander {
+    interface RowConsumer {
+        /**
+         * row在返回后会被继续修改, 需要保留的话自行复制
+         */
+        void accept(Object[] row);
+    }
+
+    private final Object[] row;
+    /**
+     * 还没有遍历完带child字段的frame, 以及每个frame下一个要看的字段
+     */
+    private SourceFrame[] frames = new SourceFrame[8];
+    private int[] cursors = new int[8];
+    private int depth;
+    /**
+     * 写入slot前的旧值, 回溯时还原
+     */
+    private int[] undoSlots = new int[32];
+    private Object[] undoValues = new Object[32];
+    private int undoSize;
+    private int rows;
+
+    RowExpander(int width) {
+        this.row = new Object[width];
+    }
+
+    /**
+     * @return 生成的行数
+     */
+    int expand(SourceFrame source, RowConsumer consumer) {
+        Arrays.fill(row, null);
+        depth = 0;
+        undoSize = 0;
+        rows = 0;
+        try {
+            enter(source);
+            next(consumer);
+            return rows;
+        } finally {
+            Arrays.fill(frames, null);
+            Arrays.fill(undoValues, 0, undoSize, null);
+            undoSize = 0;
+        }
+    }
+
+    private void next(RowConsumer consumer) {
+        if (depth == 0) {
+            rows++;
+            consumer.accept(row);
+            return;
+        }
+        int top = depth - 1;
+        SourceFrame frame = frames[top];
+        int start = cursors[top];
+        ColumnPlan.Level level = frame.getLevel();
+        for (int i = start; i < level.size(); i++) {
+            if (level.isLeaf(i)) {
+                continue;
+            }
+            Object value = frame.get(i);
+            if (value instanceof SourceFrame) {
+                cursors[top] = i + 1;
+                int mark = undoSize;
+                enter((SourceFrame) value);
+                next(consumer);
+                leave(top, mark);
+                cursors[top] = start;
+                return;
+            }
+            if (value instanceof List && !((List<?>) value).isEmpty()) {
+                cursors[top] = i + 1;
+                for (SourceFrame item : (List<SourceFrame>) value) {
+                    int mark = undoSize;
+                    enter(item);
+                    next(consumer);
+                    leave(top, mark);
+                }
+                cursors[top] = start;
+                return;
+            }
+        }
+        // 这一层遍历完了, 回到上一层继续
+        depth = top;
+        next(consumer);
+        depth = top + 1;
+        frames[top] = frame;
+        cursors[top] = start;
+    }
+
+    /**
+     * 写入frame的叶子字段并压栈; 空对象不写入也不压栈, 和之前一样不补默认值
+     */
+    private void enter(SourceFrame frame) {
+        if (frame.isEmpty()) {
+            return;
+        }
+        ColumnPlan.Level level = frame.getLevel();
+        for (int i = 0; i < level.size(); i++) {
+            if (level.isLeaf(i)) {
+                set(level.getSlot(i), frame.getOrDefault(i, level.getDefault(i)));
+            }
+        }
+        if (depth == frames.length) {
+            frames = Arrays.copyOf(frames, depth * 2);
+            cursors = Arrays.copyOf(cursors, depth * 2);
+        }
+        frames[depth] = frame;
+        cursors[depth] = 0;
+        depth++;
+    }
+
+    private void leave(int top, int mark) {
+        depth = top + 1;
+        while (undoSize > mark) {
+            undoSize--;
+            row[undoSlots[undoSize]] = undoValues[undoSize];
+            undoValues[undoSize] = null;
+        }
+    }
+
+    private void set(int slot, Object value) {
+        if (undoSize == undoSlots.length) {
+            undoSlots = Arrays.copyOf(undoSlots, undoSize * 2);
+            undoValues = Arrays.copyOf(undoValues, undoSize * 2);
+        }
+        undoSlots[undoSize] = slot;
+        undoValues[undoSize] = row[slot];
+        undoSize++;
+        row[slot] = value;
+    }
+}
@@ -0,0 +1,92 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import com.alibaba.datax.common.exception.DataXException;
+import ognl.Node;
+import ognl.Ognl;
+import ognl.OgnlContext;
+import ognl.OgnlException;
+import ognl.enhance.ExpressionAccessor;
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * 预编译的ognl过滤表达式, 一个task一个实例, 非线程安全.
+ * <p>
+ * 表达式在Task.init中只解析一次, 能编译成字节码的用编译后的accessor求值,
+ * 否则用解析树求值; OgnlContext在每行之间复用.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class RowFilter {
+    private static final Logger log = LoggerFactory.getLogger(RowFilter.class);
+
+    private final String expression;
+    private final Object tree;
+    private final OgnlContext context;
+    private ExpressionAccessor accessor;
+
+    private RowFilter(String expression, Object tree, OgnlContext context, ExpressionAccessor accessor) {
+        this.expression = expression;
+        this.tree = tree;
+        this.context = context;
+        this.accessor = accessor;
+    }
+
+    /**
+     * 表达式为空时返回null
+     */
+    public static RowFilter compile(String expression, SlotRow root) {
+        if (StringUtils.isBlank(expression)) {
+            return null;
+        }
+        Object tree;
+        try {
+            tree = Ognl.parseExpression(expression);
+        } catch (OgnlException e) {
+            throw DataXException.asDataXException(ESReaderErrorCode.BAD_CONFIG_VALUE, "filter:" + expression, e);
+        }
+        OgnlContext context = (OgnlContext) Ognl.createDefaultContext(root);
+        ExpressionAccessor accessor = null;
+        try {
+            Node node = Ognl.compileExpression(context, root, expression);
+            accessor = node.getAccessor();
+        } catch (Exception e) {
+            log.info("filter [{}] can not be compiled, evaluate by parse tree: {}", expression, e.getMessage());
+        }
+        return new RowFilter(expression, tree, context, accessor);
+    }
+
+    public String getExpression() {
+        return expression;
+    }
+
+    /**
+     * 表达式结果为null或求值出错时保留该行
+     */
+    public boolean accept(SlotRow row) {
+        Object value = null;
+        boolean evaluated = false;
+        if (accessor != null) {
+            try {
+                context.setRoot(row);
+                value = accessor.get(context, row);
+                evaluated = true;
+            } catch (RuntimeException e) {
+                // 编译时按首行推断的类型不适用, 退回解析树求值
+                log.info("compiled filter [{}] failed, evaluate by parse tree: {}", expression, e.getMessage());
+                accessor = null;
+            }
+        }
+        if (!evaluated) {
+            try {
+                value = Ognl.getValue(tree, context, row);
+            } catch (OgnlException | RuntimeException e) {
+                // 如字段为null时调用它的方法
+                return true;
+            }
+        }
+        return value == null || (Boolean) value;
+    }
+}
@@ -0,0 +1,126 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.search.SearchHit;
+
+/**
+ * 一次翻页返回的数据. high level client返回解析好的hits; 低层client只保留响应原始字节, 消费时再逐条解析
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class SearchPage {
+    private final SearchHit[] hits;
+    private final BytesReference body;
+    private final int size;
+    private final long totalHits;
+    private final boolean last;
+    private Object[] sortValues;
+    private long latencyNanos = -1;
+    private long took = -1;
+    private long bytes = -1;
+    private long reserved = 0;
+
+    public SearchPage(SearchHit[] hits, long totalHits, boolean last) {
+        this.hits = hits;
+        this.body = null;
+        this.size = hits.length;
+        this.totalHits = totalHits;
+        this.last = last;
+    }
+
+    public SearchPage(BytesReference body, int size, long totalHits, boolean last) {
+        this.hits = null;
+        this.body = body;
+        this.size = size;
+        this.totalHits = totalHits;
+        this.last = last;
+    }
+
+    /**
+     * 是否是低层client返回的原始响应
+     */
+    public boolean isRaw() {
+        return body != null;
+    }
+
+    public SearchHit[] getHits() {
+        return hits;
+    }
+
+    /**
+     * 原始的_search响应体
+     */
+    public BytesReference getBody() {
+        return body;
+    }
+
+    public int size() {
+        return size;
+    }
+
+    /**
+     * 仅第一页统计总数, 其余页为-1
+     */
+    public long getTotalHits() {
+        return totalHits;
+    }
+
+    /**
+     * 本页最后一条的sort值, 从这里继续即为下一页
+     */
+    public Object[] getSortValues() {
+        return sortValues;
+    }
+
+    void setSortValues(Object[] sortValues) {
+        this.sortValues = sortValues;
+    }
+
+    /**
+     * 从发出请求到解析完响应的耗时, 单位纳秒
+     */
+    public long getLatencyNanos() {
+        return latencyNanos;
+    }
+
+    /**
+     * 响应中的took, 即服务端的执行耗时, 单位毫秒; 没有返回时为-1
+     */
+    public long getTook() {
+        return took;
+    }
+
+    /**
+     * 响应的大小: 低层client为响应体字节数, high level client为按各条hit的_source和fields估算的字节数之和
+     */
+    public long getBytes() {
+        return bytes;
+    }
+
+    void setStats(long latencyNanos, long took, long bytes) {
+        this.latencyNanos = latencyNanos;
+        this.took = took;
+        this.bytes = bytes;
+    }
+
+    void setReserved(long reserved) {
+        this.reserved = reserved;
+    }
+
+    /**
+     * 取走本页在{@link MemoryGovernor}中预留的字节数, 由取走的一方负责释放
+     */
+    long takeReserved() {
+        long bytes = reserved;
+        reserved = 0;
+        return bytes;
+    }
+
+    /**
+     * 是否已经是最后一页
+     */
+    public boolean isLast() {
+        return last;
+    }
+}
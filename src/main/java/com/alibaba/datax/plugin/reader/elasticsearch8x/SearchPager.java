@@ -0,0 +1,448 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import com.alibaba.datax.common.exception.DataXException;
+import org.apache.commons.lang3.StringUtils;
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.action.search.SearchRequest;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.client.Cancellable;
+import org.elasticsearch.client.Request;
+import org.elasticsearch.client.Response;
+import org.elasticsearch.client.ResponseListener;
+import org.elasticsearch.common.Strings;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.document.DocumentField;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.PointInTimeBuilder;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.FieldSortBuilder;
+import org.elasticsearch.search.sort.SortBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.elasticsearch.xcontent.DeprecationHandler;
+import org.elasticsearch.xcontent.NamedXContentRegistry;
+import org.elasticsearch.xcontent.XContentParser;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 基于Point-in-Time + search_after的翻页
+ * <p>
+ * 1. 没有传入pit时自己打开一个, close时关闭;
+ * 2. 自动追加_shard_doc作为排序的tiebreaker, 未指定排序时直接按_shard_doc排序;
+ * 3. 只有第一页统计total hits;
+ * 4. rawTransport时通过低层RestClient发送请求, 响应只扫描一遍取出pit id、total和最后一条的sort值,
+ * hits留给消费方流式解析, 不再构造SearchResponse/SearchHit.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class SearchPager implements Closeable {
+    private static final Logger log = LoggerFactory.getLogger(SearchPager.class);
+
+    static final String SHARD_DOC = "_shard_doc";
+
+    private final ESClient esClient;
+    private final String index;
+    private final SearchSourceBuilder sourceBuilder;
+    private final String searchType;
+    private final boolean usePit;
+    private final String keepAlive;
+    private final boolean raw;
+
+    private String pitId;
+    private boolean ownPit = false;
+    private Object[] sortValues = null;
+    private int pages = 0;
+    private boolean exhausted = false;
+    private PageSizeController sizeController;
+    private int requestedSize;
+    private long requestStart;
+
+    public SearchPager(ESClient esClient, String index, SearchSourceBuilder sourceBuilder, String searchType,
+                       boolean usePit, String pitId, String keepAlive, boolean raw) {
+        this.esClient = esClient;
+        this.index = index;
+        this.sourceBuilder = sourceBuilder;
+        this.searchType = searchType;
+        this.usePit = usePit || StringUtils.isNotBlank(pitId);
+        this.pitId = pitId;
+        this.keepAlive = keepAlive;
+        this.raw = raw;
+    }
+
+    public void open() throws IOException {
+        if (!usePit) {
+            // 没有pit时只能靠排序翻页, 没有sort的话每次都会返回第一页
+            if (!hasSort(sourceBuilder)) {
+                throw DataXException.asDataXException(ESReaderErrorCode.BAD_CONFIG_VALUE, "不使用pit时search中必须配置sort");
+            }
+            return;
+        }
+        if (StringUtils.isBlank(pitId)) {
+            pitId = esClient.openPointInTime(index, keepAlive);
+            ownPit = true;
+        }
+        addTiebreaker(sourceBuilder);
+    }
+
+    static boolean hasSort(SearchSourceBuilder sourceBuilder) {
+        List<SortBuilder<?>> sorts = sourceBuilder.sorts();
+        return sorts != null && !sorts.isEmpty();
+    }
+
+    /**
+     * pit下按_shard_doc排序代价最低, 用户排序之后再追加_shard_doc保证排序唯一
+     */
+    static void addTiebreaker(SearchSourceBuilder sourceBuilder) {
+        List<SortBuilder<?>> sorts = sourceBuilder.sorts();
+        if (sorts != null) {
+            for (SortBuilder<?> sort : sorts) {
+                if (sort instanceof FieldSortBuilder && SHARD_DOC.equals(((FieldSortBuilder) sort).getFieldName())) {
+                    return;
+                }
+            }
+        }
+        sourceBuilder.sort(SortBuilders.fieldSort(SHARD_DOC));
+    }
+
+    /**
+     * 从保存的进度继续: 下一次请求从sortValues之后开始
+     *
+     * @param ownPit 传入的pit是否由这个split自己打开, 是则读完后关闭
+     */
+    public void resume(Object[] sortValues, boolean ownPit) {
+        this.sortValues = sortValues;
+        this.ownPit = ownPit && usePit;
+        // 续读时不再统计total
+        this.pages = Math.max(pages, 1);
+    }
+
+    /**
+     * 不再负责关闭pit, 任务失败时保留pit用于下次续读
+     */
+    public void detach() {
+        this.ownPit = false;
+    }
+
+    /**
+     * 设置后每页的size由controller决定
+     */
+    public void setSizeController(PageSizeController sizeController) {
+        this.sizeController = sizeController;
+    }
+
+    /**
+     * 下一次请求的size
+     */
+    public int getPageSize() {
+        return sizeController != null ? sizeController.getSize() : sourceBuilder.size();
+    }
+
+    public boolean hasNext() {
+        return !exhausted;
+    }
+
+    public SearchPage next() throws IOException {
+        if (raw) {
+            return accept(esClient.getClient().getLowLevelClient().performRequest(nextRawRequest()));
+        }
+        SearchResponse response = esClient.getClient().search(nextRequest(), esClient.getSearchOptions());
+        return accept(response);
+    }
+
+    /**
+     * 异步翻页, 回调在client的io线程中执行; 上一页返回之前不能再次调用
+     */
+    public Cancellable nextAsync(ActionListener<SearchPage> listener) {
+        if (raw) {
+            return esClient.getClient().getLowLevelClient().performRequestAsync(nextRawRequest(), new ResponseListener() {
+                @Override
+                public void onSuccess(Response response) {
+                    SearchPage page;
+                    try {
+                        page = accept(response);
+                    } catch (Exception e) {
+                        listener.onFailure(e);
+                        return;
+                    }
+                    listener.onResponse(page);
+                }
+
+                @Override
+                public void onFailure(Exception e) {
+                    listener.onFailure(e);
+                }
+            });
+        }
+        return esClient.getClient().searchAsync(nextRequest(), esClient.getSearchOptions(), new ActionListener<SearchResponse>() {
+            @Override
+            public void onResponse(SearchResponse response) {
+                SearchPage page;
+                try {
+                    page = accept(response);
+                } catch (Exception e) {
+                    listener.onFailure(e);
+                    return;
+                }
+                listener.onResponse(page);
+            }
+
+            @Override
+            public void onFailure(Exception e) {
+                listener.onFailure(e);
+            }
+        });
+    }
+
+    SearchRequest nextRequest() {
+        SearchRequest searchRequest;
+        if (usePit) {
+            // 使用pit时请求中不能再指定index
+            searchRequest = new SearchRequest();
+            sourceBuilder.pointInTimeBuilder(new PointInTimeBuilder(pitId).setKeepAlive(keepAlive));
+        } else {
+            searchRequest = new SearchRequest(index);
+        }
+        if (sizeController != null) {
+            sourceBuilder.size(sizeController.getSize());
+        }
+        requestedSize = sourceBuilder.size();
+        requestStart = System.nanoTime();
+        sourceBuilder.trackTotalHits(pages == 0);
+        if (sortValues != null) {
+            // 第一页没有search_after, 传null会抛出NPE
+            sourceBuilder.searchAfter(sortValues);
+        }
+        searchRequest.searchType(searchType);
+        searchRequest.source(sourceBuilder);
+        if (log.isDebugEnabled()) {
+            log.debug("searchAfter is：{} ", Arrays.toString(sortValues));
+        }
+        return searchRequest;
+    }
+
+    Request nextRawRequest() {
+        SearchRequest searchRequest = nextRequest();
+        Request request = new Request("POST", usePit ? "/_search" : "/" + index + "/_search");
+        request.addParameter("search_type", searchType);
+        request.setJsonEntity(Strings.toString(searchRequest.source()));
+        request.setOptions(esClient.getSearchOptions());
+        return request;
+    }
+
+    SearchPage accept(SearchResponse response) throws IOException {
+        if (response.getFailedShards() > 0) {
+            throw shardFailure(response.getFailedShards(), response.getTotalShards(), Arrays.toString(response.getShardFailures()));
+        }
+        if (response.isTimedOut()) {
+            throw timedOut();
+        }
+        SearchHit[] hits = response.getHits().getHits();
+        long total = -1;
+        if (pages == 0) {
+            TotalHits totalHits = response.getHits().getTotalHits();
+            total = totalHits == null ? -1 : totalHits.value;
+        }
+        Object[] lastSortValues = hits.length == 0 ? null : hits[hits.length - 1].getSortValues();
+        long bytes = 0;
+        for (SearchHit hit : hits) {
+            bytes += estimateBytes(hit);
+        }
+        long latency = System.nanoTime() - requestStart;
+        if (sizeController != null) {
+            observe(hits.length, bytes, latency);
+        }
+        advance(response.pointInTimeId(), hits.length, lastSortValues);
+        SearchPage page = new SearchPage(hits, total, exhausted);
+        page.setSortValues(lastSortValues);
+        page.setStats(latency, response.getTook() == null ? -1 : response.getTook().millis(), bytes);
+        return page;
+    }
+
+    /**
+     * high level client拿不到响应体的大小, 按_source和fields(docvalue_fields/fields读取时)中的值估算一条hit的字节数
+     */
+    static long estimateBytes(SearchHit hit) {
+        long bytes = hit.getId() == null ? 0 : hit.getId().length();
+        if (hit.getSourceRef() != null) {
+            bytes += hit.getSourceRef().length();
+        }
+        for (DocumentField field : hit.getDocumentFields().values()) {
+            bytes += field.getName().length();
+            for (Object value : field.getValues()) {
+                bytes += value instanceof Number || value instanceof Boolean ? 8 : String.valueOf(value).length();
+            }
+        }
+        return bytes;
+    }
+
+    SearchPage accept(Response response) throws IOException {
+        return accept(ESClient.responseBody(response));
+    }
+
+    /**
+     * 解析低层client返回的响应体
+     */
+    SearchPage accept(BytesReference body) throws IOException {
+        String pointInTimeId = null;
+        boolean timedOut = false;
+        long total = -1;
+        long took = -1;
+        int count = 0;
+        Object[] lastSortValues = null;
+        try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY,
+                DeprecationHandler.IGNORE_DEPRECATIONS, body)) {
+            if (parser.nextToken() != XContentParser.Token.START_OBJECT) {
+                throw new IOException("search response is not an object");
+            }
+            while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+                String name = parser.currentName();
+                XContentParser.Token token = parser.nextToken();
+                if ("pit_id".equals(name)) {
+                    pointInTimeId = parser.text();
+                } else if ("took".equals(name) && token == XContentParser.Token.VALUE_NUMBER) {
+                    took = parser.longValue();
+                } else if ("timed_out".equals(name) && token == XContentParser.Token.VALUE_BOOLEAN) {
+                    timedOut = parser.booleanValue();
+                } else if ("_shards".equals(name) && token == XContentParser.Token.START_OBJECT) {
+                    checkShards(parser.map());
+                } else if ("hits".equals(name) && token == XContentParser.Token.START_OBJECT) {
+                    while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+                        String hitsName = parser.currentName();
+                        token = parser.nextToken();
+                        if ("total".equals(hitsName)) {
+                            total = readTotal(parser, token);
+                        } else if ("hits".equals(hitsName) && token == XContentParser.Token.START_ARRAY) {
+                            while (parser.nextToken() == XContentParser.Token.START_OBJECT) {
+                                count++;
+                                lastSortValues = skimHit(parser);
+                            }
+                        } else {
+                            parser.skipChildren();
+                        }
+                    }
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        }
+        if (timedOut) {
+            throw timedOut();
+        }
+        if (pages > 0) {
+            total = -1;
+        }
+        long latency = System.nanoTime() - requestStart;
+        if (sizeController != null) {
+            observe(count, body.length(), latency);
+        }
+        advance(pointInTimeId, count, lastSortValues);
+        SearchPage page = new SearchPage(body, count, total, exhausted);
+        page.setSortValues(lastSortValues);
+        page.setStats(latency, took, body.length());
+        return page;
+    }
+
+    static void checkShards(Map<String, Object> shards) throws IOException {
+        Object failed = shards.get("failed");
+        if (failed instanceof Number && ((Number) failed).intValue() > 0) {
+            Object total = shards.get("total");
+            throw shardFailure(((Number) failed).intValue(), total instanceof Number ? ((Number) total).intValue() : -1,
+                    String.valueOf(shards.get("failures")));
+        }
+    }
+
+    /**
+     * 部分分片失败时这一页的数据不完整, 不能当作正常的结果翻过去; 失败原因是es_rejected_execution时可以重试
+     */
+    private static IOException shardFailure(int failed, int total, String failures) {
+        return new IOException(String.format("%d of %d shards failed: %s", failed, total, failures));
+    }
+
+    /**
+     * 超时的分片只返回了部分结果, 不满一页会被当作读完, 满一页则search_after会越过没有返回的文档; 按超时重试这一页
+     */
+    private SocketTimeoutException timedOut() {
+        return new SocketTimeoutException(String.format("search of [%s] timed out, only partial results were returned", index));
+    }
+
+    private static long readTotal(XContentParser parser, XContentParser.Token token) throws IOException {
+        if (token == XContentParser.Token.VALUE_NUMBER) {
+            return parser.longValue();
+        }
+        long total = -1;
+        if (token == XContentParser.Token.START_OBJECT) {
+            while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+                String name = parser.currentName();
+                parser.nextToken();
+                if ("value".equals(name)) {
+                    total = parser.longValue();
+                } else {
+                    parser.skipChildren();
+                }
+            }
+        } else {
+            parser.skipChildren();
+        }
+        return total;
+    }
+
+    /**
+     * 跳过一条hit, 只取出sort值
+     */
+    private static Object[] skimHit(XContentParser parser) throws IOException {
+        Object[] hitSortValues = null;
+        while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+            String name = parser.currentName();
+            XContentParser.Token token = parser.nextToken();
+            if ("sort".equals(name) && token == XContentParser.Token.START_ARRAY) {
+                hitSortValues = parser.list().toArray();
+            } else {
+                parser.skipChildren();
+            }
+        }
+        return hitSortValues;
+    }
+
+    private void observe(int hits, long bytes, long latencyNanos) {
+        sizeController.observe(requestedSize, hits, bytes, latencyNanos / 1000000);
+    }
+
+    private void advance(String pointInTimeId, int hits, Object[] lastSortValues) {
+        if (StringUtils.isNotBlank(pointInTimeId)) {
+            // 每次都使用最新返回的pit id
+            pitId = pointInTimeId;
+        }
+        pages++;
+        // pit视图不变, 不满一页即说明已经读完
+        exhausted = hits == 0 || (usePit && hits < requestedSize);
+        if (!exhausted) {
+            sortValues = lastSortValues;
+        }
+    }
+
+    public String getPitId() {
+        return pitId;
+    }
+
+    public Object[] getSortValues() {
+        return sortValues;
+    }
+
+    @Override
+    public void close() {
+        if (ownPit) {
+            esClient.closePointInTime(pitId);
+            ownPit = false;
+        }
+    }
+}
@@ -0,0 +1,52 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import java.util.AbstractMap;
+import java.util.LinkedHashSet;
+import java.util.Set;
+
+/**
+ * slot数组的只读Map视图, 作为ognl filter的根对象, key为column最终写入的名称.
+ * 一个task复用一个实例, 每行通过reset切换数组.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class SlotRow extends AbstractMap<String, Object> {
+    private final ColumnPlan plan;
+    private Object[] row;
+
+    public SlotRow(ColumnPlan plan) {
+        this.plan = plan;
+    }
+
+    public SlotRow reset(Object[] row) {
+        this.row = row;
+        return this;
+    }
+
+    @Override
+    public Object get(Object key) {
+        int slot = key instanceof String ? plan.slotOf((String) key) : -1;
+        if (slot < 0 || slot == plan.getDeleteSlot()) {
+            return null;
+        }
+        return row[slot];
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        int slot = key instanceof String ? plan.slotOf((String) key) : -1;
+        return slot >= 0 && slot != plan.getDeleteSlot();
+    }
+
+    @Override
+    public Set<Entry<String, Object>> entrySet() {
+        Set<Entry<String, Object>> entries = new LinkedHashSet<>();
+        for (int slot = 0; slot < plan.width(); slot++) {
+            if (slot != plan.getDeleteSlot()) {
+                entries.add(new SimpleImmutableEntry<>(plan.getName(slot), row[slot]));
+            }
+        }
+        return entries;
+    }
+}
@@ -0,0 +1,168 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.document.DocumentField;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.xcontent.DeprecationHandler;
+import org.elasticsearch.xcontent.NamedXContentRegistry;
+import org.elasticsearch.xcontent.XContentParser;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 流式解析_source: 按column树逐个token匹配字段名, 未配置的字段直接跳过,
+ * 不再先转成String再用Gson解析成Map.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class SourceDecoder {
+
+    private final ColumnPlan.Level root;
+
+    public SourceDecoder(ColumnPlan plan) {
+        this.root = plan.getRoot();
+    }
+
+    public SourceFrame decode(BytesReference source) throws IOException {
+        try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY,
+                DeprecationHandler.IGNORE_DEPRECATIONS, source)) {
+            return decode(parser);
+        }
+    }
+
+    /**
+     * parser停在_source对象的START_OBJECT或之前
+     */
+    public SourceFrame decode(XContentParser parser) throws IOException {
+        XContentParser.Token token = parser.currentToken();
+        if (token == null) {
+            token = parser.nextToken();
+        }
+        if (token != XContentParser.Token.START_OBJECT) {
+            throw new IOException("_source is not an object, token: " + token);
+        }
+        return readObject(parser, root);
+    }
+
+    /**
+     * 从docvalue_fields/fields的结果组装frame. 返回的值是按完整路径展开的, 对象数组中各元素的字段无法再一一对应,
+     * 因此带child的字段都按单个对象处理; 多值字段的值为List
+     */
+    public SourceFrame decode(Map<String, DocumentField> fields) {
+        return readFields(fields, root);
+    }
+
+    private SourceFrame readFields(Map<String, DocumentField> fields, ColumnPlan.Level level) {
+        SourceFrame frame = new SourceFrame(level);
+        for (int position = 0; position < level.size(); position++) {
+            ColumnPlan.Level child = level.getChild(position);
+            if (child != null) {
+                SourceFrame childFrame = readFields(fields, child);
+                if (!childFrame.isEmpty()) {
+                    frame.incrementFieldCount();
+                    frame.set(position, childFrame);
+                }
+                continue;
+            }
+            DocumentField field = fields.get(level.getPath(position));
+            if (field == null || field.getValues().isEmpty()) {
+                continue;
+            }
+            ColumnConverter converter = level.getConverter(position);
+            List<Object> values = field.getValues();
+            frame.incrementFieldCount();
+            if (values.size() == 1) {
+                frame.set(position, converter.fromDocValue(values.get(0)));
+            } else {
+                List<Object> converted = new ArrayList<>(values.size());
+                for (Object value : values) {
+                    converted.add(converter.fromDocValue(value));
+                }
+                frame.set(position, converted);
+            }
+        }
+        return frame;
+    }
+
+    private SourceFrame readObject(XContentParser parser, ColumnPlan.Level level) throws IOException {
+        SourceFrame frame = new SourceFrame(level);
+        while (parser.nextToken() == XContentParser.Token.FIELD_NAME) {
+            frame.incrementFieldCount();
+            int[] positions = level.positions.get(parser.currentName());
+            XContentParser.Token token = parser.nextToken();
+            if (positions == null) {
+                parser.skipChildren();
+                continue;
+            }
+            if (positions.length == 1) {
+                int position = positions[0];
+                ColumnPlan.Level child = level.getChild(position);
+                frame.set(position, child == null ? level.getConverter(position).read(parser, token) : readChild(parser, token, child));
+                continue;
+            }
+            // 同名字段配置了多次(如不同alias), 值只解析一次
+            Object value = level.getConverter(positions[0]).read(parser, token);
+            for (int position : positions) {
+                ColumnPlan.Level child = level.getChild(position);
+                frame.set(position, child == null ? value : toChild(value, child));
+            }
+        }
+        return frame;
+    }
+
+    private Object readChild(XContentParser parser, XContentParser.Token token, ColumnPlan.Level child) throws IOException {
+        if (token == XContentParser.Token.START_OBJECT) {
+            return readObject(parser, child);
+        }
+        if (token == XContentParser.Token.START_ARRAY) {
+            List<SourceFrame> items = new ArrayList<>();
+            while ((token = parser.nextToken()) != XContentParser.Token.END_ARRAY) {
+                if (token == XContentParser.Token.START_OBJECT) {
+                    items.add(readObject(parser, child));
+                } else {
+                    parser.skipChildren();
+                }
+            }
+            return items;
+        }
+        // 配置了child但实际值是标量, 忽略
+        return null;
+    }
+
+    @SuppressWarnings("unchecked")
+    private Object toChild(Object value, ColumnPlan.Level child) {
+        if (value instanceof Map) {
+            return fromMap((Map<String, Object>) value, child);
+        }
+        if (value instanceof List) {
+            List<SourceFrame> items = new ArrayList<>();
+            for (Object item : (List<Object>) value) {
+                if (item instanceof Map) {
+                    items.add(fromMap((Map<String, Object>) item, child));
+                }
+            }
+            return items;
+        }
+        return null;
+    }
+
+    private SourceFrame fromMap(Map<String, Object> source, ColumnPlan.Level level) {
+        SourceFrame frame = new SourceFrame(level);
+        for (Map.Entry<String, Object> entry : source.entrySet()) {
+            frame.incrementFieldCount();
+            int[] positions = level.positions.get(entry.getKey());
+            if (positions == null) {
+                continue;
+            }
+            for (int position : positions) {
+                ColumnPlan.Level child = level.getChild(position);
+                frame.set(position, child == null ? entry.getValue() : toChild(entry.getValue(), child));
+            }
+        }
+        return frame;
+    }
+}
@@ -0,0 +1,53 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import java.util.Arrays;
+
+/**
+ * 按column树解码后的一层_source, 只保留配置了的字段.
+ * 叶子字段的值是标量(对象/数组则为Map/List), 带child的字段的值是SourceFrame(对象)或List&lt;SourceFrame&gt;(数组)
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class SourceFrame {
+    static final Object ABSENT = new Object();
+
+    private final ColumnPlan.Level level;
+    private final Object[] values;
+    private int fieldCount = 0;
+
+    SourceFrame(ColumnPlan.Level level) {
+        this.level = level;
+        this.values = new Object[level.size()];
+        Arrays.fill(values, ABSENT);
+    }
+
+    public ColumnPlan.Level getLevel() {
+        return level;
+    }
+
+    /**
+     * 对应的_source对象是否一个字段都没有
+     */
+    public boolean isEmpty() {
+        return fieldCount == 0;
+    }
+
+    void incrementFieldCount() {
+        fieldCount++;
+    }
+
+    void set(int position, Object value) {
+        values[position] = value;
+    }
+
+    public Object get(int position) {
+        Object value = values[position];
+        return value == ABSENT ? null : value;
+    }
+
+    public Object getOrDefault(int position, Object defaultValue) {
+        Object value = values[position];
+        return value == ABSENT ? defaultValue : value;
+    }
+}
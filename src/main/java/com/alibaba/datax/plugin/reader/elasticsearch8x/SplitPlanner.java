@@ -0,0 +1,165 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.PriorityQueue;
+
+/**
+ * 把search在各个具体索引上的读取拆成工作单元, 再装箱成大小接近的task.
+ * <p>
+ * 1. 通配符、别名和data stream先展开成具体索引, 每个search在每个有数据的索引上是一个单元;
+ * 2. slice模式下, 文档数超过平均每个task文档数的索引再按slice拆分, slice数不超过该索引的分片数;
+ * 3. range模式下按字段的百分位数把search切成若干个连续的范围, 每个范围是一个单元, 没有该字段的文档单独一个单元;
+ * 4. 按文档数从大到小依次放入当前最小的task(LPT), 一个task按顺序读取分到的多个单元.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class SplitPlanner {
+    /**
+     * 一个search在一个索引上的一个slice
+     */
+    public static final class Unit {
+        final int search;
+        final String index;
+        final int sliceId;
+        final int sliceMax;
+        final long docs;
+        /**
+         * range模式下的范围, 其余模式为null
+         */
+        final Map<String, Object> range;
+
+        Unit(int search, String index, int sliceId, int sliceMax, long docs) {
+            this(search, index, sliceId, sliceMax, docs, null);
+        }
+
+        Unit(int search, String index, int sliceId, int sliceMax, long docs, Map<String, Object> range) {
+            this.search = search;
+            this.index = index;
+            this.sliceId = sliceId;
+            this.sliceMax = sliceMax;
+            this.docs = docs;
+            this.range = range;
+        }
+
+        public String getSplitId() {
+            return search + "_" + index + "_" + sliceId + "_" + sliceMax;
+        }
+
+        @Override
+        public String toString() {
+            return getSplitId() + "(" + docs + ")";
+        }
+    }
+
+    private SplitPlanner() {
+    }
+
+    /**
+     * @param docs   search在各个索引上匹配的文档数, 没有数据的索引不产生单元
+     * @param shards 各个索引的分片数
+     * @param target 平均每个task的文档数
+     * @param slice  是否允许按slice拆分索引
+     */
+    public static List<Unit> units(int search, Map<String, Long> docs, Map<String, Integer> shards, long target, boolean slice) {
+        List<Unit> units = new ArrayList<>();
+        for (Map.Entry<String, Long> entry : docs.entrySet()) {
+            long count = entry.getValue();
+            if (count <= 0) {
+                continue;
+            }
+            int sliceMax = 1;
+            if (slice) {
+                Integer shardCount = shards.get(entry.getKey());
+                long wanted = (count + Math.max(target, 1) - 1) / Math.max(target, 1);
+                sliceMax = (int) Math.max(1, Math.min(wanted, shardCount == null ? 1 : shardCount));
+            }
+            for (int sliceId = 0; sliceId < sliceMax; sliceId++) {
+                units.add(new Unit(search, entry.getKey(), sliceId, sliceMax, count / sliceMax));
+            }
+        }
+        return units;
+    }
+
+    /**
+     * 百分位数转成切分点: 跳过没有值的, 整数字段取整;
+     * 数据倾斜时相邻的百分位数可能相同, 只保留递增的切分点
+     */
+    public static List<Object> cuts(List<Double> percentiles, boolean integral) {
+        List<Object> cuts = new ArrayList<>();
+        double last = Double.NEGATIVE_INFINITY;
+        for (Double value : percentiles) {
+            if (value == null || value.isNaN()) {
+                continue;
+            }
+            double cut = integral ? Math.round(value) : value;
+            if (cuts.isEmpty() || cut > last) {
+                cuts.add(integral ? (Object) Math.round(value) : value);
+                last = cut;
+            }
+        }
+        return cuts;
+    }
+
+    /**
+     * 按切分点把字段切成cuts.size() + 1个连续的范围[上一个切分点, 下一个切分点), 首尾不设边界;
+     * missing大于0时再加一个没有该字段的文档的单元
+     *
+     * @param cuts  从小到大的切分点
+     * @param total 匹配的文档数
+     */
+    public static List<Unit> ranges(int search, String index, String field, String format, List<Object> cuts, long total, long missing) {
+        int count = cuts.size() + 1 + (missing > 0 ? 1 : 0);
+        long perRange = Math.max(0, total - missing) / (cuts.size() + 1);
+        List<Unit> units = new ArrayList<>(count);
+        for (int i = 0; i <= cuts.size(); i++) {
+            Map<String, Object> range = new LinkedHashMap<>();
+            range.put("field", field);
+            if (i > 0) {
+                range.put("gte", cuts.get(i - 1));
+            }
+            if (i < cuts.size()) {
+                range.put("lt", cuts.get(i));
+            }
+            if (format != null) {
+                range.put("format", format);
+            }
+            units.add(new Unit(search, index, i, count, perRange, range));
+        }
+        if (missing > 0) {
+            Map<String, Object> range = new LinkedHashMap<>();
+            range.put("field", field);
+            range.put("missing", true);
+            units.add(new Unit(search, index, count - 1, count, missing, range));
+        }
+        return units;
+    }
+
+    /**
+     * 最长处理时间优先(LPT)装箱, 返回不超过bins个非空的task
+     */
+    public static List<List<Unit>> pack(List<Unit> units, int bins) {
+        List<Unit> sorted = new ArrayList<>(units);
+        sorted.sort(Comparator.comparingLong((Unit u) -> u.docs).reversed());
+        int count = Math.max(1, Math.min(bins, sorted.size()));
+        List<List<Unit>> tasks = new ArrayList<>(count);
+        // [已分配的文档数, task下标]
+        PriorityQueue<long[]> loads = new PriorityQueue<>(count, (a, b) -> a[0] != b[0] ? Long.compare(a[0], b[0]) : Long.compare(a[1], b[1]));
+        for (int i = 0; i < count; i++) {
+            tasks.add(new ArrayList<>());
+            loads.add(new long[]{0, i});
+        }
+        for (Unit unit : sorted) {
+            long[] least = loads.poll();
+            tasks.get((int) least[1]).add(unit);
+            least[0] += unit.docs;
+            loads.add(least);
+        }
+        tasks.removeIf(List::isEmpty);
+        return tasks;
+    }
+}
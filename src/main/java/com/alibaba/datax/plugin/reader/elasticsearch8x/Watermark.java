@@ -0,0 +1,117 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONObject;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+
+/**
+ * 增量读取的水位, 保存在本地文件中.
+ * <p>
+ * value为上次成功读完的上界, 本次读取(value, pending];
+ * 开始读取前先保存pending, 成功后把pending提交为value. 失败重跑时沿用未提交的pending,
+ * 重跑读取的范围和失败那次一致, 断点续读的进度也仍然有效.
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class Watermark {
+    private static final Logger log = LoggerFactory.getLogger(Watermark.class);
+
+    private final File file;
+    private Object value;
+    private Object pending;
+
+    private Watermark(File file) {
+        this.file = file;
+    }
+
+    public static Watermark of(String dir, String key) {
+        return new Watermark(new File(dir, key + ".watermark.json"));
+    }
+
+    /**
+     * 读取保存的水位, 没有文件时返回false, 即第一次全量读取
+     */
+    public boolean load() throws IOException {
+        if (!file.isFile()) {
+            return false;
+        }
+        JSONObject json = JSON.parseObject(new String(Files.readAllBytes(file.toPath()), StandardCharsets.UTF_8));
+        if (json == null) {
+            return false;
+        }
+        this.value = decode(json, "value");
+        this.pending = decode(json, "pending");
+        return true;
+    }
+
+    private static Object decode(JSONObject json, String name) {
+        Object[] values = Checkpoint.decodeSortValues(json.getJSONArray(name), json.getJSONArray(name + "Type"));
+        return values == null ? null : values[0];
+    }
+
+    /**
+     * 开始读取到upper为止
+     */
+    public void begin(Object upper) throws IOException {
+        this.pending = upper;
+        write();
+    }
+
+    /**
+     * 本次读取成功, 下次从pending之后开始
+     */
+    public void commit() throws IOException {
+        if (pending != null) {
+            value = pending;
+            pending = null;
+        }
+        write();
+        log.info("watermark [{}] committed: {}", file, value);
+    }
+
+    private void write() throws IOException {
+        JSONObject json = new JSONObject(true);
+        put(json, "value", value);
+        put(json, "pending", pending);
+        json.put("updateTime", System.currentTimeMillis());
+        File dir = file.getParentFile();
+        if (!dir.isDirectory() && !dir.mkdirs() && !dir.isDirectory()) {
+            throw new IOException("can not create watermark dir: " + dir);
+        }
+        Path tmp = new File(dir, file.getName() + ".tmp").toPath();
+        Files.write(tmp, json.toJSONString().getBytes(StandardCharsets.UTF_8));
+        Files.move(tmp, file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    private static void put(JSONObject json, String name, Object value) {
+        if (value == null) {
+            return;
+        }
+        Object[] values = new Object[]{value};
+        json.put(name, values);
+        json.put(name + "Type", Checkpoint.sortTypes(values));
+    }
+
+    /**
+     * 上次成功读完的上界, 第一次为null
+     */
+    public Object getValue() {
+        return value;
+    }
+
+    /**
+     * 上次没有成功的读取的上界
+     */
+    public Object getPending() {
+        return pending;
+    }
+}
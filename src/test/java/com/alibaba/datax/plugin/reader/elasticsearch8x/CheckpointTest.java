@@ -0,0 +1,92 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import com.alibaba.fastjson.JSON;
+import com.alibaba.fastjson.JSONArray;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.io.File;
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 翻页进度的保存和读取, sort值经过json往返后类型不变
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class CheckpointTest {
+    private static final Object[] SORT_VALUES = {
+            1704067200000L, new BigInteger("18446744073709551615"), 0.1, "doc#1", null, 7, true};
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void sortValuesKeepTheirTypes() {
+        JSONArray values = JSON.parseArray(JSON.toJSONString(SORT_VALUES));
+        JSONArray types = JSON.parseArray(JSON.toJSONString(Checkpoint.sortTypes(SORT_VALUES)));
+        Object[] decoded = Checkpoint.decodeSortValues(values, types);
+        assertArrayEquals(SORT_VALUES, decoded);
+        for (int i = 0; i < SORT_VALUES.length; i++) {
+            if (SORT_VALUES[i] != null) {
+                assertEquals(SORT_VALUES[i].getClass(), decoded[i].getClass());
+            }
+        }
+        // 一个Long在json中和Integer没有区别, 没有类型时按json解析的结果
+        Object[] small = {5L};
+        assertEquals(Integer.class, Checkpoint.decodeSortValues(JSON.parseArray(JSON.toJSONString(small)), null)[0].getClass());
+        assertEquals(Long.class, Checkpoint.decodeSortValues(JSON.parseArray(JSON.toJSONString(small)),
+                JSON.parseArray(JSON.toJSONString(Checkpoint.sortTypes(small))))[0].getClass());
+        assertNull(Checkpoint.decodeSortValues(null, null));
+    }
+
+    @Test
+    public void saveAndLoad() throws Exception {
+        String dir = folder.getRoot().getPath();
+        Checkpoint checkpoint = Checkpoint.of(dir, "job", "0_test_0_1", "hash");
+        assertFalse(checkpoint.load());
+        checkpoint.save("pit", SORT_VALUES, 300, 3, false);
+
+        Checkpoint loaded = Checkpoint.of(dir, "job", "0_test_0_1", "hash");
+        assertTrue(loaded.load());
+        assertEquals("pit", loaded.getPitId());
+        assertArrayEquals(SORT_VALUES, loaded.getSortValues());
+        assertEquals(300, loaded.getDocs());
+        assertEquals(3, loaded.getPages());
+        assertFalse(loaded.isFinished());
+
+        checkpoint.save(null, null, 310, 4, true);
+        assertTrue(loaded.load());
+        assertNull(loaded.getPitId());
+        assertNull(loaded.getSortValues());
+        assertTrue(loaded.isFinished());
+        assertFalse(new File(dir, "job-0_test_0_1.json.tmp").exists());
+    }
+
+    @Test
+    public void changedQueryIgnoresCheckpoint() throws Exception {
+        String dir = folder.getRoot().getPath();
+        Checkpoint.of(dir, "job", "split", "hash").save("pit", new Object[]{1L}, 10, 1, false);
+        assertFalse(Checkpoint.of(dir, "job", "split", "other").load());
+        assertTrue(Checkpoint.of(dir, "job", "split", "hash").load());
+    }
+
+    @Test
+    public void deleteAllRemovesOnlyTheJob() throws Exception {
+        String dir = folder.getRoot().getPath();
+        Checkpoint.of(dir, "job", "a", "hash").save(null, new Object[]{1L}, 1, 1, false);
+        Checkpoint.of(dir, "job", "b", "hash").save(null, new Object[]{2L}, 1, 1, true);
+        Checkpoint.of(dir, "other", "a", "hash").save(null, new Object[]{3L}, 1, 1, false);
+        Checkpoint.deleteAll(dir, "job");
+        assertFalse(Checkpoint.of(dir, "job", "a", "hash").load());
+        assertFalse(Checkpoint.of(dir, "job", "b", "hash").load());
+        assertTrue(Checkpoint.of(dir, "other", "a", "hash").load());
+    }
+}
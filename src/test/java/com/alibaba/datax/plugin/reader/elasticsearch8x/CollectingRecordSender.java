@@ -0,0 +1,102 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import com.alibaba.datax.common.element.Column;
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.plugin.RecordSender;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 保存所有发送的record, 代替writer通道
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+final class CollectingRecordSender implements RecordSender {
+    private final List<Record> records = Collections.synchronizedList(new ArrayList<>());
+
+    List<Record> getRecords() {
+        return records;
+    }
+
+    /**
+     * 每条record第column列的字符串值
+     */
+    List<String> column(int column) {
+        List<String> values = new ArrayList<>();
+        synchronized (records) {
+            for (Record record : records) {
+                values.add(record.getColumn(column).asString());
+            }
+        }
+        return values;
+    }
+
+    @Override
+    public Record createRecord() {
+        return new ListRecord();
+    }
+
+    @Override
+    public void sendToWriter(Record record) {
+        records.add(record);
+    }
+
+    @Override
+    public void flush() {
+    }
+
+    @Override
+    public void terminate() {
+    }
+
+    @Override
+    public void shutdown() {
+    }
+
+    private static final class ListRecord implements Record {
+        private final List<Column> columns = new ArrayList<>();
+        private Map<String, String> meta;
+
+        @Override
+        public void addColumn(Column column) {
+            columns.add(column);
+        }
+
+        @Override
+        public void setColumn(int i, Column column) {
+            columns.set(i, column);
+        }
+
+        @Override
+        public Column getColumn(int i) {
+            return columns.get(i);
+        }
+
+        @Override
+        public int getColumnNumber() {
+            return columns.size();
+        }
+
+        @Override
+        public int getByteSize() {
+            return 0;
+        }
+
+        @Override
+        public int getMemorySize() {
+            return 0;
+        }
+
+        public void setMeta(Map<String, String> meta) {
+            this.meta = meta;
+        }
+
+        public Map<String, String> getMeta() {
+            return meta;
+        }
+    }
+}
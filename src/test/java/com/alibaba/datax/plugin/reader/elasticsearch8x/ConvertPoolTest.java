@@ -0,0 +1,172 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import com.alibaba.datax.common.element.LongColumn;
+import com.alibaba.datax.common.element.Record;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.function.Consumer;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.fail;
+
+/**
+ * 并行转换: 结果的顺序、在task线程中交付和预留内存的释放
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class ConvertPoolTest {
+    private static final int BATCHES = 40;
+    private static final int PER_BATCH = 5;
+
+    private final CollectingRecordSender sender = new CollectingRecordSender();
+
+    /**
+     * 每个hit是一个整数: 负数记为解析错误, 能被7整除的记为脏数据, 其余生成一条record; 随机耗时打乱完成顺序
+     */
+    private ConvertPool.Converter converter() {
+        return (hit, batch) -> {
+            int value = (Integer) hit;
+            sleepRandomly();
+            if (value < 0) {
+                batch.onParseError(String.valueOf(value), new IOException("bad source"));
+                return;
+            }
+            Record record = sender.createRecord();
+            record.addColumn(new LongColumn((long) value));
+            batch.onDocument(-1, 1);
+            batch.add(record, value % 7 == 0 ? "dirty " + value : null);
+        };
+    }
+
+    private static void sleepRandomly() {
+        try {
+            Thread.sleep(ThreadLocalRandom.current().nextInt(3));
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private static List<Integer> hits(int batch) {
+        List<Integer> hits = new ArrayList<>();
+        for (int i = 0; i < PER_BATCH; i++) {
+            hits.add(batch * PER_BATCH + i);
+        }
+        return hits;
+    }
+
+    private static List<Long> values(List<Record> records) {
+        List<Long> values = new ArrayList<>();
+        for (Record record : records) {
+            values.add(record.getColumn(0).asLong());
+        }
+        return values;
+    }
+
+    private static List<Long> expected() {
+        List<Long> values = new ArrayList<>();
+        for (long i = 0; i < BATCHES * PER_BATCH; i++) {
+            values.add(i);
+        }
+        return values;
+    }
+
+    private List<Record> convertAll(boolean ordered, MemoryGovernor memory) {
+        final List<Record> records = new ArrayList<>();
+        Consumer<ConvertPool.Batch> sink = batch -> records.addAll(batch.records);
+        try (ConvertPool pool = new ConvertPool(3, ordered, memory, this::converter, "test-convert")) {
+            for (int i = 0; i < BATCHES; i++) {
+                pool.submit(hits(i), i, 0, sink);
+            }
+            pool.flush(sink);
+        }
+        return records;
+    }
+
+    @Test
+    public void orderedKeepsHitOrder() {
+        assertEquals(expected(), values(convertAll(true, new MemoryGovernor(0, 0))));
+    }
+
+    @Test
+    public void unorderedDeliversEveryRecordOnce() {
+        List<Long> values = values(convertAll(false, new MemoryGovernor(0, 0)));
+        Collections.sort(values);
+        assertEquals(expected(), values);
+    }
+
+    @Test
+    public void batchesAreHandledOnTheSubmittingThread() {
+        final Thread taskThread = Thread.currentThread();
+        final List<String> dirty = new ArrayList<>();
+        final List<String> errors = new ArrayList<>();
+        final int[] documents = {0};
+        Consumer<ConvertPool.Batch> sink = batch -> {
+            assertSame(taskThread, Thread.currentThread());
+            errors.addAll(batch.errorIds);
+            documents[0] += batch.docs;
+            for (String message : batch.dirty) {
+                if (message != null) {
+                    dirty.add(message);
+                }
+            }
+        };
+        try (ConvertPool pool = new ConvertPool(2, false, new MemoryGovernor(0, 0), this::converter, "test-convert")) {
+            pool.submit(Arrays.asList(1, -2, 7, 3), null, 0, sink);
+            pool.submit(Arrays.asList(14, -5), null, 0, sink);
+            pool.flush(sink);
+        }
+        assertEquals(Arrays.asList("-2", "-5"), sorted(errors));
+        assertEquals(Arrays.asList("dirty 14", "dirty 7"), sorted(dirty));
+        assertEquals(4, documents[0]);
+    }
+
+    private static List<String> sorted(List<String> values) {
+        List<String> copy = new ArrayList<>(values);
+        Collections.sort(copy);
+        return copy;
+    }
+
+    @Test
+    public void releasesReservedBytesWhenDeliveredOrClosed() {
+        MemoryGovernor memory = new MemoryGovernor(0, 0);
+        Consumer<ConvertPool.Batch> sink = batch -> {
+        };
+        ConvertPool pool = new ConvertPool(2, true, memory, this::converter, "test-convert");
+        try {
+            memory.adjust(300);
+            pool.submit(hits(0), null, 100, sink);
+            pool.submit(hits(1), null, 200, sink);
+            pool.flush(sink);
+            assertEquals(0, memory.getUsed());
+
+            memory.adjust(50);
+            pool.submit(hits(2), null, 50, sink);
+        } finally {
+            pool.close();
+        }
+        assertEquals(0, memory.getUsed());
+    }
+
+    @Test
+    public void converterFailureIsRethrownToTheTaskThread() {
+        Consumer<ConvertPool.Batch> sink = batch -> {
+        };
+        try (ConvertPool pool = new ConvertPool(2, true, new MemoryGovernor(0, 0), () -> (hit, batch) -> {
+            throw new IllegalStateException("convert failed");
+        }, "test-convert")) {
+            pool.submit(hits(0), null, 0, sink);
+            pool.flush(sink);
+            fail("converter failure should be rethrown");
+        } catch (IllegalStateException e) {
+            assertEquals("convert failed", e.getMessage());
+        }
+    }
+}
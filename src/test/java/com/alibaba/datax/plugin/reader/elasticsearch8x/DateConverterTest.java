@@ -0,0 +1,56 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import org.junit.Test;
+
+import java.time.Instant;
+import java.util.Date;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * date字段按mapping的format解析
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class DateConverterTest {
+
+    private static Object convert(String format, Object value) {
+        return new ColumnConverter.DateConverter(format).fromDocValue(value);
+    }
+
+    private static Date date(String instant) {
+        return Date.from(Instant.parse(instant));
+    }
+
+    @Test
+    public void defaultFormatReadsIsoAndEpochMillis() {
+        String format = ColumnConverter.DateConverter.DEFAULT_FORMAT;
+        assertEquals(date("2024-01-01T00:00:00Z"), convert(format, "2024-01-01"));
+        assertEquals(date("2024-01-01T08:00:00Z"), convert(format, "2024-01-01T08:00:00Z"));
+        assertEquals(date("2024-01-01T00:00:00Z"), convert(format, "1704067200000"));
+        assertEquals(date("2024-01-01T00:00:00Z"), convert(format, 1704067200000L));
+    }
+
+    @Test
+    public void namedFormatsUseTheirOwnPattern() {
+        assertEquals(date("2024-01-01T00:00:00Z"), convert("basic_date", "20240101"));
+        assertEquals(date("2024-01-01T00:00:00Z"), convert("strict_basic_date", 20240101L));
+        assertEquals(date("2024-01-01T00:00:00Z"), convert("date_time", "2024-01-01T08:00:00.000+08:00"));
+        assertEquals(date("2024-01-01T12:30:00Z"), convert("basic_date_time_no_millis", "20240101T123000Z"));
+        assertEquals(date("2024-03-01T00:00:00Z"), convert("year_month", "2024-03"));
+    }
+
+    @Test
+    public void numbersAreEpochOnlyWithEpochFormat() {
+        assertEquals("12345", convert("yyyy-MM-dd", "12345"));
+        assertEquals(date("2024-01-01T00:00:00Z"), convert("yyyy-MM-dd||epoch_second", 1704067200L));
+        assertEquals(date("2024-01-01T00:00:00Z"), convert("epoch_second", "1704067200"));
+    }
+
+    @Test
+    public void unsupportedFormatKeepsString() {
+        assertEquals("2024-W01-1", convert("week_date", "2024-W01-1"));
+        assertEquals("2024/01/01", convert("basic_date", "2024/01/01"));
+    }
+}
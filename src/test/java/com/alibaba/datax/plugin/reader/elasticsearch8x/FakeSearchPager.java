@@ -0,0 +1,112 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import org.elasticsearch.action.ActionListener;
+import org.elasticsearch.client.Cancellable;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+
+import java.io.IOException;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.List;
+
+/**
+ * 不访问集群的翻页器: 依次返回给定的页或异常, 异步请求在单独的线程中回调, 和client的io线程一样
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+class FakeSearchPager extends SearchPager {
+    private final Deque<Object> items;
+    private volatile boolean closed = false;
+
+    /**
+     * @param items {@link SearchPage}或者请求时抛出的异常
+     */
+    FakeSearchPager(List<?> items) {
+        super(null, "test", new SearchSourceBuilder().size(100), "query_then_fetch", false, null, "1m", false);
+        this.items = new ArrayDeque<>(items);
+    }
+
+    /**
+     * 第from条开始的count条文档, _source为{"id":i,"n":i}; 估算大小固定为bytes
+     */
+    static SearchPage page(int from, int count, boolean last, long bytes) {
+        SearchHit[] hits = new SearchHit[count];
+        for (int i = 0; i < count; i++) {
+            int id = from + i;
+            SearchHit hit = new SearchHit(id, String.valueOf(id), new Text("_doc"), Collections.emptyMap(), Collections.emptyMap());
+            hit.sourceRef(new BytesArray("{\"id\":" + id + ",\"n\":" + id + "}"));
+            hits[i] = hit;
+        }
+        SearchPage page = new SearchPage(hits, -1, last);
+        page.setStats(0, -1, bytes);
+        return page;
+    }
+
+    /**
+     * pages页, 每页perPage条, 最后一页带上last标记
+     */
+    static List<SearchPage> pages(int pages, int perPage, long bytes) {
+        List<SearchPage> result = new ArrayList<>();
+        for (int i = 0; i < pages; i++) {
+            result.add(page(i * perPage, perPage, i == pages - 1, bytes));
+        }
+        return result;
+    }
+
+    boolean isClosed() {
+        return closed;
+    }
+
+    @Override
+    public void open() {
+    }
+
+    @Override
+    public synchronized boolean hasNext() {
+        return !items.isEmpty();
+    }
+
+    @Override
+    public SearchPage next() throws IOException {
+        Object item;
+        synchronized (this) {
+            item = items.poll();
+        }
+        if (item instanceof IOException) {
+            throw (IOException) item;
+        }
+        if (item instanceof RuntimeException) {
+            throw (RuntimeException) item;
+        }
+        return (SearchPage) item;
+    }
+
+    @Override
+    public Cancellable nextAsync(ActionListener<SearchPage> listener) {
+        final Object item;
+        synchronized (this) {
+            item = items.poll();
+        }
+        Thread thread = new Thread(() -> {
+            if (item instanceof Exception) {
+                listener.onFailure((Exception) item);
+            } else {
+                listener.onResponse((SearchPage) item);
+            }
+        }, "fake-search");
+        thread.setDaemon(true);
+        thread.start();
+        return null;
+    }
+
+    @Override
+    public void close() {
+        closed = true;
+    }
+}
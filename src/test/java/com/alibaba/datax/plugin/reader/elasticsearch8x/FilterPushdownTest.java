@@ -0,0 +1,192 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import com.alibaba.fastjson.JSON;
+import org.elasticsearch.index.query.BoolQueryBuilder;
+import org.elasticsearch.index.query.ExistsQueryBuilder;
+import org.elasticsearch.index.query.QueryBuilder;
+import org.elasticsearch.index.query.RangeQueryBuilder;
+import org.elasticsearch.index.query.TermQueryBuilder;
+import org.elasticsearch.index.query.TermsQueryBuilder;
+import org.junit.Test;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 下推的查询加上剩余的表达式, 对每一行的结果要和只在客户端用{@link RowFilter}过滤一致,
+ * 包括字段为null和缺失的行
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class FilterPushdownTest {
+    private static final String[] FIELDS = {"name", "age", "score", "active"};
+    private static final String[] TYPES = {"keyword", "long", "double", "boolean"};
+
+    /**
+     * 每行按FIELDS的顺序, null表示文档中没有该字段
+     */
+    private static final Object[][] ROWS = {
+            {"a", 30, 1.5, true},
+            {"b", 10, 2.0, false},
+            {"c", 45, 0.5, true},
+            {null, 30, null, null},
+            {"a", null, 3.0, false},
+            {null, null, null, null},
+    };
+
+    private static final List<String> PUSHED = Arrays.asList(
+            "age == 30", "age != 30", "age < 30", "age <= 30", "age > 30", "age >= 30", "30 > age",
+            "score >= 1.5", "score < 2",
+            "name == \"a\"", "name != \"a\"", "\"a\" == name",
+            "name in {\"a\", \"b\"}", "name not in {\"a\", \"b\"}", "age in {10, 30}", "age not in {10}",
+            "name == null", "name != null", "age == null", "age != null",
+            "active == true", "active != true",
+            "age > 18 && name == \"a\"", "age < 18 || name == \"b\"", "!(age > 18)", "!(name in {\"a\"})",
+            "name != null && (age >= 30 || !(score < 1))");
+
+    private final ColumnPlan plan;
+    private final EsMapping mapping;
+
+    public FilterPushdownTest() {
+        Map<String, Object> table = new HashMap<>();
+        table.put("name", "test");
+        Map<String, Object> mappingConfig = new HashMap<>();
+        Object[] columns = new Object[FIELDS.length];
+        for (int i = 0; i < FIELDS.length; i++) {
+            columns[i] = Collections.singletonMap("name", FIELDS[i]);
+            Map<String, Object> field = new HashMap<>();
+            field.put("type", TYPES[i]);
+            field.put("docValues", true);
+            mappingConfig.put(FIELDS[i], field);
+        }
+        table.put("column", columns);
+        mapping = EsMapping.fromConfig(mappingConfig);
+        plan = ColumnPlan.compile(JSON.parseObject(JSON.toJSONString(table), EsTable.class), mapping);
+    }
+
+    @Test
+    public void pushedFilterMatchesClientSideFilter() {
+        for (String filter : PUSHED) {
+            FilterPushdown pushdown = FilterPushdown.analyze(filter, plan, mapping);
+            assertNotNull("should be pushed down: " + filter, pushdown.getQuery());
+            assertNull("should be pushed down entirely: " + filter, pushdown.getResidual());
+            assertSameRows(filter, pushdown);
+        }
+    }
+
+    @Test
+    public void unsupportedPartStaysOnClient() {
+        String filter = "age > 18 && name.length() == 1";
+        FilterPushdown pushdown = FilterPushdown.analyze(filter, plan, mapping);
+        assertNotNull(pushdown.getQuery());
+        assertNotNull(pushdown.getResidual());
+        assertSameRows(filter, pushdown);
+    }
+
+    private void assertSameRows(String filter, FilterPushdown pushdown) {
+        SlotRow expectedRow = new SlotRow(plan);
+        RowFilter expected = RowFilter.compile(filter, expectedRow.reset(new Object[plan.width()]));
+        SlotRow residualRow = new SlotRow(plan);
+        RowFilter residual = RowFilter.compile(pushdown.getResidual(), residualRow.reset(new Object[plan.width()]));
+        for (Object[] values : ROWS) {
+            Object[] row = new Object[plan.width()];
+            Map<String, Object> doc = new HashMap<>();
+            for (int i = 0; i < FIELDS.length; i++) {
+                row[plan.slotOf(FIELDS[i])] = values[i];
+                if (values[i] != null) {
+                    doc.put(FIELDS[i], values[i]);
+                }
+            }
+            boolean actual = (pushdown.getQuery() == null || matches(pushdown.getQuery(), doc))
+                    && (residual == null || residual.accept(residualRow.reset(row)));
+            assertEquals(filter + " on " + Arrays.toString(values), expected.accept(expectedRow.reset(row)), actual);
+        }
+    }
+
+    /**
+     * 按elasticsearch的语义在内存中执行下推用到的几种查询, 文档中的字段都是单值
+     */
+    private static boolean matches(QueryBuilder query, Map<String, Object> doc) {
+        if (query instanceof BoolQueryBuilder) {
+            BoolQueryBuilder bool = (BoolQueryBuilder) query;
+            for (QueryBuilder clause : bool.filter()) {
+                if (!matches(clause, doc)) {
+                    return false;
+                }
+            }
+            for (QueryBuilder clause : bool.must()) {
+                if (!matches(clause, doc)) {
+                    return false;
+                }
+            }
+            for (QueryBuilder clause : bool.mustNot()) {
+                if (matches(clause, doc)) {
+                    return false;
+                }
+            }
+            if (bool.should().isEmpty()) {
+                return true;
+            }
+            int minimum = bool.minimumShouldMatch() != null ? Integer.parseInt(bool.minimumShouldMatch())
+                    : bool.filter().isEmpty() && bool.must().isEmpty() ? 1 : 0;
+            int matched = 0;
+            for (QueryBuilder clause : bool.should()) {
+                if (matches(clause, doc)) {
+                    matched++;
+                }
+            }
+            return matched >= minimum;
+        }
+        if (query instanceof TermQueryBuilder) {
+            TermQueryBuilder term = (TermQueryBuilder) query;
+            return same(doc.get(term.fieldName()), term.value());
+        }
+        if (query instanceof TermsQueryBuilder) {
+            TermsQueryBuilder terms = (TermsQueryBuilder) query;
+            for (Object value : terms.values()) {
+                if (same(doc.get(terms.fieldName()), value)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+        if (query instanceof RangeQueryBuilder) {
+            RangeQueryBuilder range = (RangeQueryBuilder) query;
+            Object value = doc.get(range.fieldName());
+            if (!(value instanceof Number)) {
+                return false;
+            }
+            double v = ((Number) value).doubleValue();
+            if (range.from() != null) {
+                double from = ((Number) range.from()).doubleValue();
+                if (range.includeLower() ? v < from : v <= from) {
+                    return false;
+                }
+            }
+            if (range.to() != null) {
+                double to = ((Number) range.to()).doubleValue();
+                return range.includeUpper() ? v <= to : v < to;
+            }
+            return true;
+        }
+        if (query instanceof ExistsQueryBuilder) {
+            return doc.get(((ExistsQueryBuilder) query).fieldName()) != null;
+        }
+        throw new AssertionError("unexpected query: " + query);
+    }
+
+    private static boolean same(Object value, Object term) {
+        if (value instanceof Number && term instanceof Number) {
+            return ((Number) value).doubleValue() == ((Number) term).doubleValue();
+        }
+        return value != null && value.equals(term);
+    }
+}
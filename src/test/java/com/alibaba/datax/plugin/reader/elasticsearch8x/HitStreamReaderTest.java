@@ -0,0 +1,120 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.bytes.BytesReference;
+import org.elasticsearch.common.xcontent.XContentHelper;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.xcontent.DeprecationHandler;
+import org.elasticsearch.xcontent.NamedXContentRegistry;
+import org.elasticsearch.xcontent.XContentParser;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 原始响应逐条读取hit的结果要和HLRC解析出SearchHit再解码的结果一致
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class HitStreamReaderTest {
+    private static final String COLUMN = "[{'name':'id'},{'name':'items','child':[{'name':'sku'},{'name':'qty'}]},{'name':'tag','value':'none'}]";
+
+    private static final String SOURCE_RESPONSE = RowExpanderTest.json("{'took':3,'timed_out':false,"
+            + "'_shards':{'total':1,'successful':1,'skipped':0,'failed':0},"
+            + "'hits':{'total':{'value':3,'relation':'eq'},'max_score':null,'hits':["
+            + "{'_index':'test','_id':'1','_score':null,'_source':{'id':1,'items':[{'sku':'a','qty':1},{'sku':'b','qty':2}],'tag':'x'},'sort':[0]},"
+            + "{'_index':'test','_id':'2','_score':null,'_source':{'id':2,'other':{'items':[{'sku':'c'}]}},'sort':[1]},"
+            + "{'_index':'test','_id':'3','_score':null,'_source':{'id':3,'items':{'sku':'d','qty':[4,5]}},'sort':[2]}]},"
+            + "'aggregations':{}}");
+
+    private static final String FIELDS_RESPONSE = RowExpanderTest.json("{'took':3,'timed_out':false,"
+            + "'_shards':{'total':1,'successful':1,'skipped':0,'failed':0},"
+            + "'hits':{'total':{'value':2,'relation':'eq'},'max_score':null,'hits':["
+            + "{'_index':'test','_id':'1','_score':null,'fields':{'id':[1],'items.sku':['a','b'],'items.qty':[1]},'sort':[0]},"
+            + "{'_index':'test','_id':'2','_score':null,'sort':[1]}]}}");
+
+    private final ColumnPlan plan = RowExpanderTest.plan(COLUMN);
+    private final SourceDecoder decoder = new SourceDecoder(plan);
+
+    private List<String> expand(SourceFrame frame) {
+        List<String> rows = new ArrayList<>();
+        new RowExpander(plan.width()).expand(frame, row -> rows.add(Arrays.toString(row)));
+        return rows;
+    }
+
+    private List<String> readRaw(String body, boolean docValues, List<String> errors) throws IOException {
+        List<String> rows = new ArrayList<>();
+        HitStreamReader.read(new BytesArray(body), decoder, docValues, new HitStreamReader.HitConsumer() {
+            @Override
+            public void accept(String id, SourceFrame frame) {
+                for (String row : expand(frame)) {
+                    rows.add(id + row);
+                }
+            }
+
+            @Override
+            public void onParseError(String id, IOException e) {
+                errors.add(id);
+            }
+        });
+        return rows;
+    }
+
+    /**
+     * 和Task.decodeHit一样从SearchHit解码
+     */
+    private List<String> readHlrc(String body, boolean docValues) throws IOException {
+        SearchResponse response;
+        try (XContentParser parser = XContentHelper.createParser(NamedXContentRegistry.EMPTY,
+                DeprecationHandler.IGNORE_DEPRECATIONS, new BytesArray(body))) {
+            response = SearchResponse.fromXContent(parser);
+        }
+        List<String> rows = new ArrayList<>();
+        for (SearchHit hit : response.getHits().getHits()) {
+            BytesReference source = hit.getSourceRef();
+            SourceFrame frame = docValues ? decoder.decode(hit.getDocumentFields()) : source == null ? null : decoder.decode(source);
+            if (frame == null) {
+                continue;
+            }
+            for (String row : expand(frame)) {
+                rows.add(hit.getId() + row);
+            }
+        }
+        return rows;
+    }
+
+    @Test
+    public void sourceRowsMatchHlrc() throws IOException {
+        List<String> errors = new ArrayList<>();
+        List<String> raw = readRaw(SOURCE_RESPONSE, false, errors);
+        assertEquals(Arrays.asList("1[1, a, 1, x]", "1[1, b, 2, x]", "2[2, null, null, none]", "3[3, d, [4, 5], none]"), raw);
+        assertEquals(readHlrc(SOURCE_RESPONSE, false), raw);
+        assertEquals(0, errors.size());
+    }
+
+    @Test
+    public void fieldsRowsMatchHlrc() throws IOException {
+        List<String> raw = readRaw(FIELDS_RESPONSE, true, new ArrayList<>());
+        // fields按完整路径展开, 对象数组只能按单个对象处理
+        assertEquals(Arrays.asList("1[1, [a, b], 1, none]", "2[null, null, null, null]"), raw);
+        assertEquals(readHlrc(FIELDS_RESPONSE, true), raw);
+    }
+
+    @Test
+    public void badSourceOnlyFailsItsHit() throws IOException {
+        String body = RowExpanderTest.json("{'hits':{'hits':["
+                + "{'_id':'1','_source':'not an object'},"
+                + "{'_id':'2','_source':{'id':2}},"
+                + "{'_id':'3'}]}}");
+        List<String> errors = new ArrayList<>();
+        assertEquals(Arrays.asList("2[2, null, null, none]"), readRaw(body, false, errors));
+        assertEquals(Arrays.asList("1"), errors);
+    }
+}
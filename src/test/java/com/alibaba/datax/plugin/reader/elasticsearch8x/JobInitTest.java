@@ -0,0 +1,73 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import com.alibaba.datax.common.exception.DataXException;
+import com.alibaba.datax.common.util.Configuration;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.sort.SortBuilders;
+import org.junit.Test;
+
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Job.init中的配置检查
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class JobInitTest {
+
+    private static Configuration init(String json) {
+        EsReader.Job job = new EsReader.Job();
+        job.setPluginJobConf(Configuration.from(json));
+        job.init();
+        return job.getPluginJobConf();
+    }
+
+    @Test
+    public void emptySearchReadsAllDocuments() {
+        assertEquals("[{}]", init("{\"search\":[]}").getString(Key.SEARCH_KEY));
+        assertEquals("[{}]", init("{}").getString(Key.SEARCH_KEY));
+    }
+
+    @Test
+    public void withoutPitRequiresSort() {
+        try {
+            init("{\"usePit\":false,\"search\":[{\"sort\":[\"id\"]},{\"query\":{\"match_all\":{}}}]}");
+            fail("search without sort should be rejected");
+        } catch (DataXException e) {
+            assertEquals(ESReaderErrorCode.BAD_CONFIG_VALUE, e.getErrorCode());
+        }
+        init("{\"usePit\":false,\"search\":{\"query\":{\"match_all\":{}},\"sort\":[{\"id\":\"asc\"}]}}");
+        try {
+            init("{\"usePit\":false,\"search\":{\"query\":{\"match_all\":{}}}}");
+            fail("single search without sort should be rejected");
+        } catch (DataXException e) {
+            assertEquals(ESReaderErrorCode.BAD_CONFIG_VALUE, e.getErrorCode());
+        }
+    }
+
+    @Test
+    public void singleSearchObjectBecomesList() {
+        Configuration conf = init("{\"search\":{\"query\":{\"match_all\":{}}}}");
+        List<Object> search = conf.getList(Key.SEARCH_KEY, Object.class);
+        assertEquals(1, search.size());
+        assertTrue(search.get(0) instanceof Map);
+    }
+
+    @Test
+    public void pagerWithoutPitRequiresSort() throws Exception {
+        SearchSourceBuilder sorted = new SearchSourceBuilder().sort(SortBuilders.fieldSort("id"));
+        new SearchPager(null, "test", sorted, "query_then_fetch", false, null, "1m", false).open();
+        try {
+            new SearchPager(null, "test", new SearchSourceBuilder(), "query_then_fetch", false, null, "1m", false).open();
+            fail("search without sort should be rejected");
+        } catch (DataXException e) {
+            assertEquals(ESReaderErrorCode.BAD_CONFIG_VALUE, e.getErrorCode());
+        }
+    }
+}
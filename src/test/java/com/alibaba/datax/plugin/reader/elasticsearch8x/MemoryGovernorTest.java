@@ -0,0 +1,102 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 预算、释放后的回调和JVM共用的预算
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class MemoryGovernorTest {
+
+    @After
+    public void nothingLeaked() {
+        assertEquals(0, MemoryGovernor.getJvmUsed());
+    }
+
+    @Test
+    public void firstReservationIsAlwaysAllowed() {
+        MemoryGovernor memory = new MemoryGovernor(100, 0);
+        assertTrue(memory.tryReserve(500, () -> {
+        }));
+        assertEquals(500, memory.getUsed());
+        memory.release(500);
+    }
+
+    @Test
+    public void waitingCallbackRunsOnceAfterRelease() {
+        MemoryGovernor memory = new MemoryGovernor(100, 0);
+        final AtomicInteger calls = new AtomicInteger();
+        assertTrue(memory.tryReserve(80, calls::incrementAndGet));
+        assertFalse(memory.tryReserve(40, calls::incrementAndGet));
+        assertEquals(0, calls.get());
+
+        memory.release(80);
+        assertEquals(1, calls.get());
+        // 回调已经移除, 再次释放不会重复调用
+        memory.adjust(10);
+        memory.release(10);
+        assertEquals(1, calls.get());
+        assertEquals(0, memory.getUsed());
+    }
+
+    @Test
+    public void adjustCorrectsTheReservation() {
+        MemoryGovernor memory = new MemoryGovernor(100, 0);
+        assertTrue(memory.tryReserve(50, () -> {
+        }));
+        memory.adjust(30);
+        assertEquals(80, memory.getUsed());
+        memory.adjust(-60);
+        assertEquals(20, memory.getUsed());
+        memory.release(20);
+    }
+
+    @Test(timeout = 10000)
+    public void reserveBlocksUntilReleased() throws Exception {
+        final MemoryGovernor memory = new MemoryGovernor(100, 0);
+        memory.reserve(90);
+        final CountDownLatch reserved = new CountDownLatch(1);
+        Thread waiter = new Thread(() -> {
+            try {
+                memory.reserve(50);
+                reserved.countDown();
+            } catch (Exception e) {
+                throw new IllegalStateException(e);
+            }
+        });
+        waiter.start();
+        assertFalse(reserved.await(200, TimeUnit.MILLISECONDS));
+        memory.release(90);
+        assertTrue(reserved.await(5, TimeUnit.SECONDS));
+        waiter.join();
+        assertEquals(50, memory.getUsed());
+        memory.release(50);
+    }
+
+    @Test
+    public void jvmBudgetIsSharedByAllTasks() {
+        MemoryGovernor first = new MemoryGovernor(0, 100);
+        MemoryGovernor second = new MemoryGovernor(0, 100);
+        final AtomicInteger calls = new AtomicInteger();
+        assertTrue(first.tryReserve(60, calls::incrementAndGet));
+        assertTrue(second.tryReserve(30, calls::incrementAndGet));
+        assertEquals(90, MemoryGovernor.getJvmUsed());
+        assertFalse(second.tryReserve(30, calls::incrementAndGet));
+
+        // 其他task释放后重试
+        first.release(60);
+        assertEquals(1, calls.get());
+        second.release(30);
+    }
+}
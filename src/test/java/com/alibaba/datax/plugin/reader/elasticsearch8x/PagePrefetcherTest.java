@@ -0,0 +1,106 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import org.junit.After;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 预取的顺序、读完和出错的传递以及预留内存
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class PagePrefetcherTest {
+    private final MemoryGovernor memory = new MemoryGovernor(0, 0);
+
+    @After
+    public void nothingLeaked() {
+        assertEquals(0, MemoryGovernor.getJvmUsed());
+    }
+
+    private PagePrefetcher prefetcher(FakeSearchPager pager, int depth) {
+        return new PagePrefetcher(pager, depth, new RetryPolicy(3, 1, 10), new RateLimiter(0, false), memory);
+    }
+
+    private void consume(SearchPage page) {
+        memory.release(page.takeReserved());
+    }
+
+    @Test(timeout = 10000)
+    public void returnsPagesInOrderThenEnd() throws Exception {
+        for (int depth = 0; depth <= 2; depth++) {
+            FakeSearchPager pager = new FakeSearchPager(FakeSearchPager.pages(5, 3, 100));
+            AtomicInteger notified = new AtomicInteger();
+            PagePrefetcher prefetcher = prefetcher(pager, depth);
+            prefetcher.setListener(notified::incrementAndGet);
+            prefetcher.start();
+            List<String> ids = new ArrayList<>();
+            SearchPage page;
+            while ((page = prefetcher.take()) != null) {
+                ids.add(page.getHits()[0].getId());
+                consume(page);
+            }
+            assertEquals(Arrays.asList("0", "3", "6", "9", "12"), ids);
+            // 读完后再取仍然返回null
+            assertNull(prefetcher.take());
+            if (depth > 0) {
+                // 放入最后一页之后才回调, 可能晚于take返回
+                while (notified.get() < 5) {
+                    Thread.sleep(10);
+                }
+                assertTrue(prefetcher.isReady());
+            }
+            prefetcher.close();
+            assertTrue(pager.isClosed());
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void failureIsRethrownAfterBufferedPages() throws IOException {
+        for (int depth = 0; depth <= 2; depth++) {
+            List<Object> items = new ArrayList<>();
+            items.add(FakeSearchPager.page(0, 3, false, 100));
+            items.add(new IllegalStateException("search failed"));
+            PagePrefetcher prefetcher = prefetcher(new FakeSearchPager(items), depth);
+            prefetcher.start();
+            consume(prefetcher.take());
+            // 异步预取时出错后一直停在错误上, 再取也会抛出
+            for (int attempt = 0; attempt < (depth == 0 ? 1 : 2); attempt++) {
+                try {
+                    prefetcher.take();
+                    fail("failure should be rethrown");
+                } catch (IOException e) {
+                    assertEquals("search failed", e.getCause().getMessage());
+                } catch (IllegalStateException e) {
+                    // depth为0时同步请求直接抛出原始异常
+                    assertEquals(0, depth);
+                    assertEquals("search failed", e.getMessage());
+                }
+            }
+            prefetcher.close();
+        }
+    }
+
+    @Test(timeout = 10000)
+    public void closeReleasesBufferedPages() throws Exception {
+        FakeSearchPager pager = new FakeSearchPager(FakeSearchPager.pages(4, 3, 100));
+        PagePrefetcher prefetcher = prefetcher(pager, 2);
+        prefetcher.start();
+        consume(prefetcher.take());
+        while (!prefetcher.isReady() || memory.getUsed() < 200) {
+            Thread.sleep(10);
+        }
+        prefetcher.close();
+        assertEquals(0, memory.getUsed());
+    }
+}
@@ -0,0 +1,90 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import com.alibaba.fastjson.JSON;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+
+/**
+ * 流式解析_source并按column树展开成行, 嵌套数组之间做笛卡尔积
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class RowExpanderTest {
+    /**
+     * slot顺序: id, title, sku, p, t
+     */
+    private static final String COLUMN = "[{'name':'id'},{'name':'title','value':'none'},"
+            + "{'name':'items','child':[{'name':'sku'},{'name':'parts','child':[{'name':'p'}]}]},"
+            + "{'name':'tags','child':[{'name':'t'}]}]";
+
+    static ColumnPlan plan(String column) {
+        return ColumnPlan.compile(JSON.parseObject("{'name':'test','column':" + column + "}", EsTable.class));
+    }
+
+    static String json(String singleQuoted) {
+        return singleQuoted.replace('\'', '"');
+    }
+
+    /**
+     * 展开后的每一行转成字符串, 数字按json解析出的类型比较没有意义
+     */
+    private static List<String> expand(ColumnPlan plan, String source) throws IOException {
+        SourceFrame frame = new SourceDecoder(plan).decode(new BytesArray(json(source)));
+        List<String> rows = new ArrayList<>();
+        int count = new RowExpander(plan.width()).expand(frame, row -> rows.add(Arrays.toString(row)));
+        assertEquals(rows.size(), count);
+        return rows;
+    }
+
+    private static String row(Object... values) {
+        return Arrays.toString(values);
+    }
+
+    @Test
+    public void nestedArraysFanOutAsCartesianProduct() throws IOException {
+        ColumnPlan plan = plan(COLUMN);
+        List<String> rows = expand(plan, "{'id':1,'other':{'skip':[1,2,{'x':3}]},"
+                + "'items':[{'sku':'a','parts':[{'p':1},{'p':2}]},{'sku':'b','parts':[{'p':3}]}],"
+                + "'tags':[{'t':'x'},{'t':'y'}]}");
+        // 每个item只和自己的parts组合, 再和所有tags组合
+        assertEquals(Arrays.asList(
+                row(1, "none", "a", 1, "x"), row(1, "none", "a", 1, "y"),
+                row(1, "none", "a", 2, "x"), row(1, "none", "a", 2, "y"),
+                row(1, "none", "b", 3, "x"), row(1, "none", "b", 3, "y")), rows);
+    }
+
+    @Test
+    public void emptyArraysAndObjects() throws IOException {
+        ColumnPlan plan = plan(COLUMN);
+        assertEquals(Arrays.asList(row(1, "t", "a", null, null)),
+                expand(plan, "{'id':1,'title':'t','items':{'sku':'a','parts':[]},'tags':[]}"));
+        // 数组中的空对象也是一个元素, 产生一行, 但不写入也不补默认值
+        assertEquals(Arrays.asList(row(2, "none", null, null, "x"), row(2, "none", null, null, "y"),
+                row(2, "none", "a", null, "x"), row(2, "none", "a", null, "y")),
+                expand(plan, "{'id':2,'items':[{},{'sku':'a'}],'tags':[{'t':'x'},{'t':'y'}]}"));
+        assertEquals(Arrays.asList(row(null, null, null, null, null)), expand(plan, "{}"));
+    }
+
+    @Test
+    public void scalarWhereObjectExpectedIsIgnored() throws IOException {
+        ColumnPlan plan = plan(COLUMN);
+        assertEquals(Arrays.asList(row(1, "none", null, null, "x")),
+                expand(plan, "{'id':1,'items':'a','tags':[1,{'t':'x'},[2]]}"));
+    }
+
+    @Test
+    public void sameFieldConfiguredTwiceIsParsedOnce() throws IOException {
+        ColumnPlan plan = plan("[{'name':'id'},{'name':'id','alias':'id2'},"
+                + "{'name':'items','child':[{'name':'sku'}]},{'name':'items','alias':'items2','child':[{'name':'sku','alias':'sku2'}]}]");
+        assertEquals(Arrays.asList(row(1, 1, "a", "a"), row(1, 1, "a", "b"), row(1, 1, "b", "a"), row(1, 1, "b", "b")),
+                expand(plan, "{'id':1,'items':[{'sku':'a'},{'sku':'b'}]}"));
+    }
+}
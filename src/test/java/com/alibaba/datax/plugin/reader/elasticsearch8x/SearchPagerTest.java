@@ -0,0 +1,117 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import org.apache.lucene.search.TotalHits;
+import org.elasticsearch.action.search.SearchResponse;
+import org.elasticsearch.action.search.ShardSearchFailure;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.common.document.DocumentField;
+import org.elasticsearch.common.text.Text;
+import org.elasticsearch.search.DocValueFormat;
+import org.elasticsearch.search.SearchHit;
+import org.elasticsearch.search.SearchHits;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.elasticsearch.search.internal.InternalSearchResponse;
+import org.junit.Test;
+
+import java.io.IOException;
+import java.net.SocketTimeoutException;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * 响应的解析: 大小估算和超时的部分结果
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class SearchPagerTest {
+
+    @Test
+    public void estimatesSourceHit() {
+        SearchHit hit = new SearchHit(0, "id1", new Text("_doc"), Collections.emptyMap(), Collections.emptyMap());
+        hit.sourceRef(new BytesArray("{\"a\":\"xyz\"}"));
+        assertEquals(3 + 11, SearchPager.estimateBytes(hit));
+    }
+
+    @Test
+    public void estimatesDocValueHit() {
+        Map<String, DocumentField> fields = new HashMap<>();
+        fields.put("name", new DocumentField("name", Collections.singletonList("abcdef")));
+        fields.put("n", new DocumentField("n", Arrays.asList(1L, 2L)));
+        SearchHit hit = new SearchHit(0, "id1", new Text("_doc"), fields, Collections.emptyMap());
+        assertEquals(3 + (4 + 6) + (1 + 8 + 8), SearchPager.estimateBytes(hit));
+    }
+
+    private static SearchPager pitPager() {
+        SearchPager pager = new SearchPager(null, "test", new SearchSourceBuilder().size(10), "query_then_fetch", true, "pit1", "1m", false);
+        pager.nextRequest();
+        return pager;
+    }
+
+    private static SearchResponse response(int hits, boolean timedOut) {
+        SearchHit[] array = new SearchHit[hits];
+        for (int i = 0; i < hits; i++) {
+            array[i] = new SearchHit(i, String.valueOf(i), new Text("_doc"), Collections.emptyMap(), Collections.emptyMap());
+            array[i].sortValues(new Object[]{(long) i}, new DocValueFormat[]{DocValueFormat.RAW});
+        }
+        SearchHits searchHits = new SearchHits(array, new TotalHits(100, TotalHits.Relation.EQUAL_TO), Float.NaN);
+        InternalSearchResponse sections = new InternalSearchResponse(searchHits, null, null, null, timedOut, null, 1);
+        return new SearchResponse(sections, null, 2, 2, 0, 5, ShardSearchFailure.EMPTY_ARRAY, SearchResponse.Clusters.EMPTY);
+    }
+
+    private static BytesArray rawResponse(int hits, boolean timedOut) {
+        StringBuilder body = new StringBuilder("{\"took\":5,\"timed_out\":").append(timedOut)
+                .append(",\"_shards\":{\"total\":2,\"successful\":2,\"failed\":0},\"hits\":{\"total\":{\"value\":100},\"hits\":[");
+        for (int i = 0; i < hits; i++) {
+            body.append(i == 0 ? "" : ",").append("{\"_id\":\"").append(i).append("\",\"_source\":{},\"sort\":[").append(i).append("]}");
+        }
+        return new BytesArray(body.append("]}}").toString());
+    }
+
+    @Test
+    public void timedOutShortPageIsRetriedInsteadOfEndingTheSplit() throws IOException {
+        SearchPager pager = pitPager();
+        try {
+            pager.accept(response(3, true));
+            fail("timed out page should be rejected");
+        } catch (SocketTimeoutException e) {
+            assertTrue(RetryPolicy.isRetryable(e));
+        }
+        // 没有翻过这一页, 重试时还从原来的位置开始
+        assertTrue(pager.hasNext());
+        assertNull(pager.getSortValues());
+
+        SearchPage page = pager.accept(response(10, false));
+        assertEquals(10, page.size());
+        assertTrue(pager.hasNext());
+        assertArrayEquals(new Object[]{9L}, pager.getSortValues());
+    }
+
+    @Test
+    public void timedOutRawPageIsRetriedInsteadOfEndingTheSplit() throws IOException {
+        SearchPager pager = pitPager();
+        try {
+            pager.accept(rawResponse(3, true));
+            fail("timed out page should be rejected");
+        } catch (SocketTimeoutException e) {
+            assertTrue(RetryPolicy.isRetryable(e));
+        }
+        assertTrue(pager.hasNext());
+        assertNull(pager.getSortValues());
+
+        SearchPage page = pager.accept(rawResponse(3, false));
+        assertEquals(3, page.size());
+        assertEquals(100, page.getTotalHits());
+        // pit下不满一页即读完
+        assertFalse(pager.hasNext());
+    }
+}
@@ -0,0 +1,152 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+/**
+ * 工作单元的拆分和LPT装箱
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class SplitPlannerTest {
+
+    private static SplitPlanner.Unit unit(int sliceId, long docs) {
+        return new SplitPlanner.Unit(0, "test", sliceId, 1, docs);
+    }
+
+    private static long load(List<SplitPlanner.Unit> task) {
+        long docs = 0;
+        for (SplitPlanner.Unit unit : task) {
+            docs += unit.docs;
+        }
+        return docs;
+    }
+
+    @Test
+    public void slicesAreCappedAtShardCount() {
+        Map<String, Long> docs = new LinkedHashMap<>();
+        docs.put("a", 1000L);
+        docs.put("b", 0L);
+        docs.put("c", 100L);
+        Map<String, Integer> shards = new HashMap<>();
+        shards.put("a", 3);
+        shards.put("c", 5);
+
+        List<SplitPlanner.Unit> units = SplitPlanner.units(0, docs, shards, 200, true);
+        assertEquals(4, units.size());
+        for (int i = 0; i < 3; i++) {
+            assertEquals("a", units.get(i).index);
+            assertEquals(i, units.get(i).sliceId);
+            assertEquals(3, units.get(i).sliceMax);
+            assertEquals(333, units.get(i).docs);
+        }
+        assertEquals("c", units.get(3).index);
+        assertEquals(1, units.get(3).sliceMax);
+
+        units = SplitPlanner.units(0, docs, shards, 200, false);
+        assertEquals(2, units.size());
+        assertEquals(1, units.get(0).sliceMax);
+        assertEquals(1000, units.get(0).docs);
+    }
+
+    @Test
+    public void rangesCoverTheFieldContiguously() {
+        List<SplitPlanner.Unit> units = SplitPlanner.ranges(1, "test", "ts", "epoch_millis", Arrays.<Object>asList(10L, 20L), 100, 10);
+        assertEquals(4, units.size());
+        Set<Integer> ids = new HashSet<>();
+        for (SplitPlanner.Unit unit : units) {
+            assertEquals(4, unit.sliceMax);
+            assertEquals("ts", unit.range.get("field"));
+            ids.add(unit.sliceId);
+        }
+        assertEquals(4, ids.size());
+
+        Map<String, Object> first = units.get(0).range;
+        assertFalse(first.containsKey("gte"));
+        assertEquals(10L, first.get("lt"));
+        assertEquals("epoch_millis", first.get("format"));
+        assertEquals(10L, units.get(1).range.get("gte"));
+        assertEquals(20L, units.get(1).range.get("lt"));
+        Map<String, Object> last = units.get(2).range;
+        assertEquals(20L, last.get("gte"));
+        assertFalse(last.containsKey("lt"));
+        for (int i = 0; i < 3; i++) {
+            assertNull(units.get(i).range.get("missing"));
+            assertEquals(30, units.get(i).docs);
+        }
+
+        SplitPlanner.Unit missing = units.get(3);
+        assertEquals(Boolean.TRUE, missing.range.get("missing"));
+        assertFalse(missing.range.containsKey("gte"));
+        assertFalse(missing.range.containsKey("lt"));
+        assertEquals(10, missing.docs);
+    }
+
+    @Test
+    public void rangesWithoutMissingDocs() {
+        List<SplitPlanner.Unit> units = SplitPlanner.ranges(0, "test", "n", null, Collections.<Object>singletonList(5.5), 10, 0);
+        assertEquals(2, units.size());
+        assertEquals(2, units.get(0).sliceMax);
+        assertFalse(units.get(0).range.containsKey("format"));
+
+        units = SplitPlanner.ranges(0, "test", "n", null, Collections.emptyList(), 10, 0);
+        assertEquals(1, units.size());
+        assertEquals(Collections.<String, Object>singletonMap("field", "n"), units.get(0).range);
+    }
+
+    @Test
+    public void duplicatePercentilesAreDropped() {
+        List<Double> percentiles = Arrays.asList(10.0, 10.0, null, Double.NaN, 10.4, 20.0, 19.0);
+        assertEquals(Arrays.<Object>asList(10L, 20L), SplitPlanner.cuts(percentiles, true));
+        assertEquals(Arrays.<Object>asList(10.0, 10.4, 20.0), SplitPlanner.cuts(percentiles, false));
+        assertTrue(SplitPlanner.cuts(Collections.<Double>emptyList(), true).isEmpty());
+    }
+
+    @Test
+    public void packBalancesLongestFirst() {
+        List<SplitPlanner.Unit> units = new ArrayList<>();
+        long[] docs = {4, 10, 6, 9, 5, 8, 7};
+        for (int i = 0; i < docs.length; i++) {
+            units.add(unit(i, docs[i]));
+        }
+        List<List<SplitPlanner.Unit>> tasks = SplitPlanner.pack(units, 3);
+        assertEquals(3, tasks.size());
+        // 10 9 8 | 7->8 6->9 5->10 | 4 -> 负载相同时取下标最小的task
+        assertEquals(19, load(tasks.get(0)));
+        assertEquals(15, load(tasks.get(1)));
+        assertEquals(15, load(tasks.get(2)));
+        Set<SplitPlanner.Unit> packed = new HashSet<>();
+        for (List<SplitPlanner.Unit> task : tasks) {
+            packed.addAll(task);
+            // 每个task内按文档数从大到小读取
+            for (int i = 1; i < task.size(); i++) {
+                assertTrue(task.get(i - 1).docs >= task.get(i).docs);
+            }
+        }
+        assertEquals(new HashSet<>(units), packed);
+    }
+
+    @Test
+    public void packRespectsBins() {
+        List<SplitPlanner.Unit> units = Arrays.asList(unit(0, 3), unit(1, 2));
+        assertEquals(2, SplitPlanner.pack(units, 8).size());
+        assertEquals(1, SplitPlanner.pack(units, 1).size());
+        assertEquals(1, SplitPlanner.pack(units, 0).size());
+        assertTrue(SplitPlanner.pack(Collections.<SplitPlanner.Unit>emptyList(), 4).isEmpty());
+    }
+}
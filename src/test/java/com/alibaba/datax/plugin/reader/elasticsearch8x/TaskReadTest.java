@@ -0,0 +1,139 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import com.alibaba.datax.common.element.Record;
+import com.alibaba.datax.common.exception.DataXException;
+import com.alibaba.datax.common.plugin.TaskPluginCollector;
+import com.alibaba.datax.common.util.Configuration;
+import com.alibaba.fastjson.JSON;
+import org.elasticsearch.common.bytes.BytesArray;
+import org.elasticsearch.search.builder.SearchSourceBuilder;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/**
+ * Task的读取流程, 翻页器替换为{@link FakeSearchPager}
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class TaskReadTest {
+
+    static final class DirtyCollector extends TaskPluginCollector {
+        final List<String> messages = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void collectDirtyRecord(Record record, Throwable t, String errorMessage) {
+            messages.add(errorMessage);
+        }
+    }
+
+    /**
+     * 读取column为id和n的索引, 每个split依次使用pagers中的一个翻页器
+     */
+    static EsReader.Task task(Map<String, Object> parameters, final List<? extends SearchPager> pagers) {
+        Map<String, Object> conf = new HashMap<>();
+        conf.put("endpoints", "127.0.0.1:9200");
+        conf.put("index", "test");
+        conf.put("search", Collections.singletonMap("query", Collections.singletonMap("match_all", Collections.emptyMap())));
+        Map<String, Object> table = new HashMap<>();
+        table.put("name", "test");
+        table.put("column", Arrays.asList(Collections.singletonMap("name", "id"), Collections.singletonMap("name", "n")));
+        conf.put("table", table);
+        conf.putAll(parameters);
+        EsReader.Task task = new EsReader.Task() {
+            private int next = 0;
+
+            @Override
+            SearchPager newPager(SearchSourceBuilder sourceBuilder, String searchPitId) {
+                return pagers.get(next++);
+            }
+        };
+        task.setPluginJobConf(Configuration.from(JSON.toJSONString(conf)));
+        task.setTaskPluginCollector(new DirtyCollector());
+        task.init();
+        return task;
+    }
+
+    private static List<String> ids(int count) {
+        List<String> ids = new ArrayList<>();
+        for (int i = 0; i < count; i++) {
+            ids.add(String.valueOf(i));
+        }
+        return ids;
+    }
+
+    private static void readWithSmallBudget(int prefetch) {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("convertThreads", 2);
+        parameters.put("prefetch", prefetch);
+        // 每页估算1000字节, 预算不够放下两页
+        parameters.put("memoryBudget", 1500);
+        FakeSearchPager pager = new FakeSearchPager(FakeSearchPager.pages(10, 20, 1000));
+        CollectingRecordSender sender = new CollectingRecordSender();
+        EsReader.Task task = task(parameters, Collections.singletonList(pager));
+        task.startRead(sender);
+
+        assertEquals(ids(200), sender.column(0));
+        assertEquals(0, MemoryGovernor.getJvmUsed());
+    }
+
+    /**
+     * 第2页的第3条文档_source不完整
+     */
+    private static FakeSearchPager pagerWithBadSource() {
+        List<SearchPage> pages = FakeSearchPager.pages(3, 10, 100);
+        pages.get(1).getHits()[2].sourceRef(new BytesArray("{\"id\":"));
+        return new FakeSearchPager(pages);
+    }
+
+    @Test(timeout = 30000)
+    public void parseErrorOnConvertThreadIsSkippedInOrder() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("convertThreads", 2);
+        CollectingRecordSender sender = new CollectingRecordSender();
+        task(parameters, Collections.singletonList(pagerWithBadSource())).startRead(sender);
+
+        List<String> expected = ids(30);
+        expected.remove("12");
+        assertEquals(expected, sender.column(0));
+    }
+
+    @Test(timeout = 30000)
+    public void parseErrorOnConvertThreadFailsTheTask() {
+        Map<String, Object> parameters = new HashMap<>();
+        parameters.put("convertThreads", 2);
+        parameters.put("ignoreParseError", false);
+        CollectingRecordSender sender = new CollectingRecordSender();
+        try {
+            task(parameters, Collections.singletonList(pagerWithBadSource())).startRead(sender);
+            fail("parse error should fail the task");
+        } catch (DataXException e) {
+            assertEquals(ESReaderErrorCode.PARSE_SOURCE_ERROR, e.getErrorCode());
+        }
+        // 出错之前已发送的record保持顺序, 出错的文档之后的都没有发送
+        List<String> sent = sender.column(0);
+        assertTrue(sent.size() <= 12);
+        assertEquals(ids(sent.size()), sent);
+        assertEquals(0, MemoryGovernor.getJvmUsed());
+    }
+
+    @Test(timeout = 30000)
+    public void readsAllPagesWithBudgetSmallerThanTwoPages() {
+        readWithSmallBudget(1);
+    }
+
+    @Test(timeout = 30000)
+    public void readsAllPagesSynchronouslyWithBudgetSmallerThanTwoPages() {
+        readWithSmallBudget(0);
+    }
+}
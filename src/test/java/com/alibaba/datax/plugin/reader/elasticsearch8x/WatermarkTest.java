@@ -0,0 +1,81 @@
+package com.alibaba.datax.plugin.reader.elasticsearch8x;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import java.math.BigInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+
+/**
+ * 增量水位: 读取前保存pending, 只有job的post才把它提交为下次的起点
+ *
+ * @author yangsiyu
+ * @since 2026/10/17.
+ */
+public class WatermarkTest {
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private Watermark load() throws Exception {
+        Watermark watermark = Watermark.of(folder.getRoot().getPath(), "key");
+        watermark.load();
+        return watermark;
+    }
+
+    @Test
+    public void pendingSurvivesFailedRun() throws Exception {
+        Watermark first = Watermark.of(folder.getRoot().getPath(), "key");
+        assertFalse(first.load());
+        first.begin(100L);
+
+        // 第一次失败, 没有执行post; 重跑沿用上次的上界
+        Watermark retry = load();
+        assertNull(retry.getValue());
+        assertEquals(100L, retry.getPending());
+        retry.begin(retry.getPending());
+
+        Watermark again = load();
+        assertNull(again.getValue());
+        assertEquals(100L, again.getPending());
+
+        // 重跑成功, post提交
+        again.commit();
+        Watermark next = load();
+        assertEquals(100L, next.getValue());
+        assertNull(next.getPending());
+
+        next.begin(250L);
+        Watermark failed = load();
+        assertEquals(100L, failed.getValue());
+        assertEquals(250L, failed.getPending());
+    }
+
+    @Test
+    public void commitWithoutPendingKeepsValue() throws Exception {
+        Watermark watermark = Watermark.of(folder.getRoot().getPath(), "key");
+        watermark.begin("2024-01-01T00:00:00.000Z");
+        watermark.commit();
+        // 没有新数据时不调用begin
+        Watermark empty = load();
+        empty.commit();
+        assertEquals("2024-01-01T00:00:00.000Z", load().getValue());
+    }
+
+    @Test
+    public void valuesKeepTheirTypes() throws Exception {
+        Object[] values = {5L, new BigInteger("18446744073709551615"), 1.5, "2024-01-01"};
+        for (Object value : values) {
+            Watermark watermark = Watermark.of(folder.getRoot().getPath(), "key");
+            watermark.begin(value);
+            watermark.commit();
+            Object loaded = load().getValue();
+            assertEquals(value, loaded);
+            assertEquals(value.getClass(), loaded.getClass());
+        }
+    }
+}